@@ -0,0 +1,67 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.Value;
+import react.ValueView;
+import react.Values;
+
+/**
+ * Measures the cost of changing one input to {@link Values#and} and {@link Values#or} aggregates
+ * over a varying number of inputs, with a listener connected to each aggregate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregateBenchmark
+{
+    @Param({"10", "1000", "10000"})
+    public int inputs;
+
+    @Setup public void setup () {
+        // all inputs to the AND are true, all inputs to the OR are false; we toggle the last one,
+        // so each change flips the aggregate and must (naively) examine every input
+        _andInputs = new ArrayList<Value<Boolean>>();
+        _orInputs = new ArrayList<Value<Boolean>>();
+        for (int ii = 0; ii < inputs; ii++) {
+            _andInputs.add(Value.create(true));
+            _orInputs.add(Value.create(false));
+        }
+        _andLast = _andInputs.get(inputs-1);
+        _orLast = _orInputs.get(inputs-1);
+        Values.and(_andInputs).connect(_listener);
+        Values.or(_orInputs).connect(_listener);
+    }
+
+    @Benchmark public long toggleAnd () {
+        _andLast.update(!_andLast.get());
+        return _changes;
+    }
+
+    @Benchmark public long toggleOr () {
+        _orLast.update(!_orLast.get());
+        return _changes;
+    }
+
+    protected List<Value<Boolean>> _andInputs, _orInputs;
+    protected Value<Boolean> _andLast, _orLast;
+    protected long _changes;
+
+    protected final ValueView.Listener<Boolean> _listener = new ValueView.Listener<Boolean>() {
+        public void onChange (Boolean value, Boolean ovalue) {
+            _changes++;
+        }
+    };
+}
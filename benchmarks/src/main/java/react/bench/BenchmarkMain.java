@@ -0,0 +1,34 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Runs the benchmarks via the standard JMH command line, but records results as JSON unless told
+ * otherwise. Results are written to {@code react-bench-<timestamp>.json} in the current directory
+ * (or the file passed via {@code -rff}), so that runs may be archived and compared over time.
+ */
+public class BenchmarkMain
+{
+    public static void main (String[] args) throws Exception {
+        List<String> argv = new ArrayList<String>(Arrays.asList(args));
+        if (!argv.contains("-rf")) {
+            argv.add(0, "json");
+            argv.add(0, "-rf");
+        }
+        if (!argv.contains("-rff")) {
+            String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            argv.add(0, "react-bench-" + stamp + ".json");
+            argv.add(0, "-rff");
+        }
+        org.openjdk.jmh.Main.main(argv.toArray(new String[argv.size()]));
+    }
+}
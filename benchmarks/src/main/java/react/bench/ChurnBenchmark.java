@@ -0,0 +1,59 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.Connection;
+import react.Signal;
+import react.UnitSlot;
+
+/**
+ * Measures the cost of connecting a slot to, and disconnecting it from, a signal that already has
+ * a varying number of connections.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChurnBenchmark
+{
+    @Param({"0", "10", "1000"})
+    public int existing;
+
+    @Setup public void setup () {
+        _signal = Signal.create();
+        for (int ii = 0; ii < existing; ii++) _signal.connect(new Counter());
+    }
+
+    /** Connects a slot, then disconnects it via its connection. */
+    @Benchmark public Connection connectDisconnect () {
+        Connection conn = _signal.connect(_slot);
+        conn.disconnect();
+        return conn;
+    }
+
+    /** Connects a slot, then disconnects it by identity via {@link Signal#disconnect}. */
+    @Benchmark public Connection connectRemove () {
+        Connection conn = _signal.connect(_slot);
+        _signal.disconnect(_slot);
+        return conn;
+    }
+
+    protected Signal<Integer> _signal;
+    protected final Counter _slot = new Counter();
+
+    protected static class Counter extends UnitSlot {
+        public int count;
+        public void onEmit () {
+            count++;
+        }
+    }
+}
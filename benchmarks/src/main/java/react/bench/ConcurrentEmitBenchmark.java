@@ -0,0 +1,82 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.Reactor;
+import react.Signal;
+import react.Slot;
+
+/**
+ * Compares {@link Signal#emit} throughput in {@link Reactor.DispatchMode#SERIAL} mode, where
+ * emitting threads must share an external lock (as the reactor rejects concurrent notification),
+ * with {@link Reactor.DispatchMode#CONCURRENT} mode, where they emit without coordination.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentEmitBenchmark
+{
+    /** The event emitted by each thread. Slots update it, so it's per-thread to avoid contention
+     * that would swamp the cost of dispatch itself. */
+    @State(Scope.Thread)
+    public static class Event {
+        public long count;
+    }
+
+    @Param({"SERIAL", "CONCURRENT"})
+    public Reactor.DispatchMode mode;
+
+    @Param({"0", "1", "10"})
+    public int slots;
+
+    @Setup public void setup () {
+        _signal = Signal.create();
+        _signal.setDispatchMode(mode);
+        for (int ii = 0; ii < slots; ii++) {
+            _signal.connect(new Slot<Event>() {
+                public void onEmit (Event event) {
+                    event.count++;
+                }
+            });
+        }
+    }
+
+    @Benchmark @Threads(1)
+    public long emit1 (Event event) {
+        return emit(event);
+    }
+
+    @Benchmark @Threads(4)
+    public long emit4 (Event event) {
+        return emit(event);
+    }
+
+    @Benchmark @Threads(16)
+    public long emit16 (Event event) {
+        return emit(event);
+    }
+
+    protected long emit (Event event) {
+        if (mode == Reactor.DispatchMode.SERIAL) {
+            synchronized (_lock) {
+                _signal.emit(event);
+            }
+        } else {
+            _signal.emit(event);
+        }
+        return event.count;
+    }
+
+    protected Signal<Event> _signal;
+    protected final Object _lock = new Object();
+}
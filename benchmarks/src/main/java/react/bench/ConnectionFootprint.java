@@ -0,0 +1,46 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import react.Signal;
+import react.UnitSlot;
+
+/**
+ * Reports the heap retained per connection, as measured by JOL: the retained size of a signal
+ * with many connections to a single (shared) slot, less that of a signal with none, divided by the
+ * number of connections. Run via {@code java -cp target/benchmarks.jar
+ * react.bench.ConnectionFootprint}.
+ */
+public class ConnectionFootprint
+{
+    public static void main (String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        UnitSlot slot = new UnitSlot() {
+            public void onEmit () {} // noop
+        };
+
+        Signal<Object> empty = Signal.create();
+        long base = GraphLayout.parseInstance(empty, slot).totalSize();
+
+        Signal<Object> strong = Signal.create(), weak = Signal.create();
+        for (int ii = 0; ii < count; ii++) {
+            strong.connect(slot);
+            weak.connect(slot).holdWeakly();
+        }
+
+        System.out.println("Strong connection: " + perConnection(strong, slot, base, count) +
+                           " bytes");
+        System.out.println("Weak connection: " + perConnection(weak, slot, base, count) +
+                           " bytes");
+    }
+
+    protected static double perConnection (Signal<Object> signal, Object slot, long base,
+                                           int count) {
+        return (GraphLayout.parseInstance(signal, slot).totalSize() - base) / (double)count;
+    }
+}
@@ -0,0 +1,74 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.Function;
+import react.Value;
+import react.ValueView;
+import react.Values;
+
+/**
+ * Measures {@link Value#update} throughput through a graph of derived values over a shared source:
+ * a varying number of {@link ValueView#map} views of the source, the first half of which are true
+ * when it is even and the second half when it is odd, an {@link Values#or} over all of them (which
+ * is thus always true), and a mapped view of that, with a listener connected. When changes are
+ * propagated depth-first, the OR observes all of the first half changed before any of the second,
+ * and so glitches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DerivedBenchmark
+{
+    @Param({"2", "10", "100"})
+    public int views;
+
+    @Setup public void setup () {
+        _source = Value.create(0);
+        List<ValueView<Boolean>> maps = new ArrayList<ValueView<Boolean>>();
+        for (int ii = 0; ii < views; ii++) maps.add(_source.map(ii < views/2 ? EVEN : ODD));
+        Values.or(maps).map(TO_STRING).connect(new ValueView.Listener<String>() {
+            public void onChange (String value, String ovalue) {
+                _changes++;
+            }
+        });
+    }
+
+    @Benchmark public long update () {
+        _source.update(_source.get() + 1);
+        return _changes;
+    }
+
+    protected Value<Integer> _source;
+    protected long _changes;
+
+    protected static final Function<Integer,Boolean> EVEN = new Function<Integer,Boolean>() {
+        public Boolean apply (Integer value) {
+            return value % 2 == 0;
+        }
+    };
+
+    protected static final Function<Integer,Boolean> ODD = new Function<Integer,Boolean>() {
+        public Boolean apply (Integer value) {
+            return value % 2 != 0;
+        }
+    };
+
+    protected static final Function<Boolean,String> TO_STRING = new Function<Boolean,String>() {
+        public String apply (Boolean value) {
+            return String.valueOf(value);
+        }
+    };
+}
@@ -0,0 +1,48 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.Signal;
+import react.Slot;
+
+/**
+ * Measures {@link Signal#emit} throughput as a function of the number of connected slots.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmitBenchmark
+{
+    @Param({"0", "1", "10", "10000"})
+    public int slots;
+
+    @Setup public void setup () {
+        _signal = Signal.create();
+        for (int ii = 0; ii < slots; ii++) {
+            _signal.connect(new Slot<Integer>() {
+                public void onEmit (Integer value) {
+                    _sum += value;
+                }
+            });
+        }
+    }
+
+    @Benchmark public long emit () {
+        _signal.emit(_value);
+        return _sum;
+    }
+
+    protected Signal<Integer> _signal;
+    protected Integer _value = 42;
+    protected long _sum;
+}
@@ -0,0 +1,57 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.Function;
+import react.Signal;
+import react.SignalView;
+import react.Slot;
+
+/**
+ * Measures {@link Signal#emit} throughput through a chain of {@link SignalView#map} views of
+ * varying depth, with a single slot connected to the end of the chain.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapChainBenchmark
+{
+    @Param({"1", "10", "50"})
+    public int depth;
+
+    @Setup public void setup () {
+        _signal = Signal.create();
+        SignalView<Integer> view = _signal;
+        for (int ii = 0; ii < depth; ii++) view = view.map(INCR);
+        view.connect(new Slot<Integer>() {
+            public void onEmit (Integer value) {
+                _sum += value;
+            }
+        });
+    }
+
+    @Benchmark public long emit () {
+        _signal.emit(_value);
+        return _sum;
+    }
+
+    protected Signal<Integer> _signal;
+    protected Integer _value = 42;
+    protected long _sum;
+
+    protected static final Function<Integer,Integer> INCR = new Function<Integer,Integer>() {
+        public Integer apply (Integer value) {
+            return value + 1;
+        }
+    };
+}
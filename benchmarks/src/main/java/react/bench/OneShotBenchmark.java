@@ -0,0 +1,53 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.Signal;
+import react.UnitSlot;
+
+/**
+ * Measures a single emission to a large number of one-shot slots, all of which disconnect
+ * themselves during dispatch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OneShotBenchmark
+{
+    @Param({"1000", "10000", "100000"})
+    public int slots;
+
+    @Setup(Level.Invocation) public void setup () {
+        _signal = Signal.create();
+        // connect our slots from inside a dispatch, so that they're added in a single batch
+        _signal.connect(new UnitSlot() {
+            public void onEmit () {
+                for (int ii = 0; ii < slots; ii++) _signal.connect(_slot).once();
+            }
+        }).once();
+        _signal.emit(0);
+    }
+
+    @Benchmark public boolean emitOnce () {
+        _signal.emit(1);
+        return _signal.hasConnections();
+    }
+
+    protected Signal<Integer> _signal;
+    protected int _count;
+    protected final UnitSlot _slot = new UnitSlot() {
+        public void onEmit () {
+            _count++;
+        }
+    };
+}
@@ -0,0 +1,78 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.RMap;
+
+/**
+ * Measures {@link RMap#put}, {@link RMap#remove}, {@link RMap#putAll} and {@link RMap#clear}
+ * throughput as a function of the number of connected listeners.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RMapBenchmark
+{
+    @Param({"0", "1", "10"})
+    public int listeners;
+
+    @Setup public void setup () {
+        _map = RMap.create();
+        for (int ii = 0; ii < KEYS; ii++) {
+            _keys[ii] = ii;
+            _snapshot.put(_keys[ii], "value");
+        }
+        for (int ii = 0; ii < listeners; ii++) {
+            _map.connect(new RMap.Listener<Integer,String>() {
+                @Override public void onPut (Integer key, String value, String ovalue) {
+                    _count++;
+                }
+                @Override public void onRemove (Integer key, String ovalue) {
+                    _count++;
+                }
+            });
+        }
+    }
+
+    /** Adds a new mapping, then removes it. */
+    @Benchmark public long putRemove () {
+        Integer key = _keys[_next++ & (KEYS-1)];
+        _map.put(key, "value");
+        _map.remove(key);
+        return _count;
+    }
+
+    /** Replaces an existing mapping with a new value. */
+    @Benchmark public long putReplace () {
+        Integer key = _keys[_next++ & (KEYS-1)];
+        _map.put(key, (_next & KEYS) == 0 ? "one" : "two");
+        return _count;
+    }
+
+    /** Loads a snapshot of {@link #KEYS} mappings, then clears them. */
+    @Benchmark public long putAllClear () {
+        _map.putAll(_snapshot);
+        _map.clear();
+        return _count;
+    }
+
+    protected RMap<Integer,String> _map;
+    protected Map<Integer,String> _snapshot = new HashMap<Integer,String>();
+    protected Integer[] _keys = new Integer[KEYS];
+    protected int _next;
+    protected long _count;
+
+    protected static final int KEYS = 1024;
+}
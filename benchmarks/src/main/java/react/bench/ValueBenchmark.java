@@ -0,0 +1,75 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import react.IntValue;
+import react.Value;
+import react.ValueView;
+
+/**
+ * Measures {@link Value#update} throughput when the value changes, when it does not (and the
+ * update is short-circuited by the equality check), and when the update is forced. Also measures
+ * {@link IntValue#update(int)} with primitive listeners, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueBenchmark
+{
+    @Param({"0", "1", "10"})
+    public int listeners;
+
+    @Setup public void setup () {
+        _value = Value.create(0);
+        _ivalue = new IntValue(0);
+        for (int ii = 0; ii < listeners; ii++) {
+            _value.connect(new ValueView.Listener<Integer>() {
+                public void onChange (Integer value, Integer ovalue) {
+                    _sum += value;
+                }
+            });
+            _ivalue.connect(new IntValue.Listener() {
+                public void onChange (int value, int ovalue) {
+                    _sum += value;
+                }
+            });
+        }
+    }
+
+    @Benchmark public long updateChanged () {
+        _value.update(_values[_next++ & 1]);
+        return _sum;
+    }
+
+    @Benchmark public long updateEqual () {
+        _value.update(_values[0]);
+        return _sum;
+    }
+
+    @Benchmark public long updateForce () {
+        _value.updateForce(_values[0]);
+        return _sum;
+    }
+
+    @Benchmark public long updateIntChanged () {
+        _ivalue.update(_ivalues[_next++ & 1]);
+        return _sum;
+    }
+
+    protected Value<Integer> _value;
+    protected IntValue _ivalue;
+    protected int[] _ivalues = { 1000, 2000 };
+    protected Integer[] _values = { 1000, 2000 };
+    protected int _next;
+    protected long _sum;
+}
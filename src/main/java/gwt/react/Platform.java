@@ -0,0 +1,81 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+import react.Reactor.RListener;
+
+/**
+ * NOTE: this class is a modified version of the real Platform which uses neither atomic field
+ * updaters nor threads, which GWT can't handle (and doesn't need, as JavaScript is single
+ * threaded). Do not modify this class directly, but rather propagate changes from the real version
+ * hereto.
+ */
+class Platform
+{
+    /**
+     * Replaces {@code reactor}'s listener list with {@code update} iff it is currently {@code
+     * expect}.
+     * @return true if the list was replaced, false if it was changed by another thread first.
+     */
+    static <L extends RListener> boolean compareAndSetListeners (
+        Reactor<L> reactor, Cons<L>[] expect, Cons<L>[] update) {
+        if (reactor._listeners != expect) return false;
+        reactor._listeners = update;
+        return true;
+    }
+
+    /**
+     * Clears {@code cons}'s owner, atomically, so that only one of any threads that disconnect
+     * {@code cons} concurrently obtains it.
+     * @return the owner, or null if {@code cons} was already cleared.
+     */
+    static <L extends RListener> Reactor<L> clearOwner (Cons<L> cons) {
+        Reactor<L> owner = cons._owner;
+        cons._owner = null;
+        return owner;
+    }
+
+    /**
+     * Returns a token that identifies the calling thread.
+     */
+    static Object currentThread () {
+        return MAIN_THREAD;
+    }
+
+    /**
+     * Returns the computed value being evaluated on the calling thread, if any.
+     */
+    static Computed<?> evaluating () {
+        return _evaluating;
+    }
+
+    /**
+     * Notes the computed value being evaluated on the calling thread, or null.
+     */
+    static void setEvaluating (Computed<?> computed) {
+        _evaluating = computed;
+    }
+
+    /**
+     * Returns true if any computed value is being evaluated, on any thread. This allows reads to
+     * skip dependency tracking when none are.
+     */
+    static boolean anyEvaluating () {
+        return _evaluations > 0;
+    }
+
+    /**
+     * Adjusts the number of computed values being evaluated, on any thread, by {@code delta}.
+     */
+    static void addEvaluations (int delta) {
+        _evaluations += delta;
+    }
+
+    private static Computed<?> _evaluating;
+    private static int _evaluations;
+
+    private static final Object MAIN_THREAD = new Object();
+}
@@ -0,0 +1,101 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * Handles the machinery of connecting slots to a double signal and emitting events to them,
+ * without exposing a public interface for emitting events. Slots that extend {@link DoubleSlot} are
+ * notified without boxing; other slots receive boxed events, so this may be used anywhere a {@code
+ * SignalView<Double>} is expected.
+ */
+public class AbstractDoubleSignal extends AbstractSignal<Double>
+{
+    /** Transforms a double event into another. See {@link #mapDouble}. */
+    public interface Transform {
+        double apply (double value);
+    }
+
+    /** Selects double events. See {@link #filterDouble}. */
+    public interface Filter {
+        boolean apply (double value);
+    }
+
+    /**
+     * Creates a signal that maps this signal via a function, without boxing. When this signal
+     * emits a value, the mapped signal will emit that value as transformed by the supplied
+     * function. The mapped signal will retain a connection to this signal for as long as it has
+     * connections of its own.
+     */
+    public AbstractDoubleSignal mapDouble (final Transform func) {
+        final AbstractDoubleSignal outer = this;
+        return new Mapped() {
+            @Override protected Connection connect () {
+                return outer.connect(new DoubleSlot() {
+                    @Override public void onEmit (double value) {
+                        notifyEmit(func.apply(value));
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Creates a signal that emits, without boxing, only those events emitted by this signal which
+     * are accepted by the supplied filter. The filtered signal will retain a connection to this
+     * signal for as long as it has connections of its own.
+     */
+    public AbstractDoubleSignal filterDouble (final Filter filter) {
+        final AbstractDoubleSignal outer = this;
+        return new Mapped() {
+            @Override protected Connection connect () {
+                return outer.connect(new DoubleSlot() {
+                    @Override public void onEmit (double value) {
+                        if (filter.apply(value)) notifyEmit(value);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Emits the supplied event to all connected slots.
+     */
+    protected void notifyEmit (double event) {
+        dispatch(DOUBLE_EMIT, null, null, null, Double.doubleToLongBits(event), 0L);
+    }
+
+    /** Plumbing for mapped double signals; see {@link MappedSignal}. */
+    static abstract class Mapped extends AbstractDoubleSignal {
+        protected abstract Connection connect ();
+
+        @Override protected void connectionAdded () {
+            super.connectionAdded();
+            if (_conn == null) _conn = connect();
+        }
+
+        @Override protected void connectionRemoved () {
+            super.connectionRemoved();
+            if (!hasConnections() && _conn != null) {
+                _conn.disconnect();
+                _conn = null;
+            }
+        }
+
+        protected Connection _conn;
+    }
+
+    protected static final Notifier DOUBLE_EMIT = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Slot<Double> slot = (Slot<Double>)lner;
+            slot.onEmit((Double)a1);
+        }
+        @Override public void dispatch (Object lner, Object a1, Object a2, Object a3,
+                                        long p1, long p2) {
+            if (lner instanceof DoubleSlot) ((DoubleSlot)lner).onEmit(Double.longBitsToDouble(p1));
+            else dispatch(lner, Double.valueOf(Double.longBitsToDouble(p1)), null, null);
+        }
+    };
+}
@@ -0,0 +1,101 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * Handles the machinery of connecting slots to an int signal and emitting events to them,
+ * without exposing a public interface for emitting events. Slots that extend {@link IntSlot} are
+ * notified without boxing; other slots receive boxed events, so this may be used anywhere a {@code
+ * SignalView<Integer>} is expected.
+ */
+public class AbstractIntSignal extends AbstractSignal<Integer>
+{
+    /** Transforms an int event into another. See {@link #mapInt}. */
+    public interface Transform {
+        int apply (int value);
+    }
+
+    /** Selects int events. See {@link #filterInt}. */
+    public interface Filter {
+        boolean apply (int value);
+    }
+
+    /**
+     * Creates a signal that maps this signal via a function, without boxing. When this signal
+     * emits a value, the mapped signal will emit that value as transformed by the supplied
+     * function. The mapped signal will retain a connection to this signal for as long as it has
+     * connections of its own.
+     */
+    public AbstractIntSignal mapInt (final Transform func) {
+        final AbstractIntSignal outer = this;
+        return new Mapped() {
+            @Override protected Connection connect () {
+                return outer.connect(new IntSlot() {
+                    @Override public void onEmit (int value) {
+                        notifyEmit(func.apply(value));
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Creates a signal that emits, without boxing, only those events emitted by this signal which
+     * are accepted by the supplied filter. The filtered signal will retain a connection to this
+     * signal for as long as it has connections of its own.
+     */
+    public AbstractIntSignal filterInt (final Filter filter) {
+        final AbstractIntSignal outer = this;
+        return new Mapped() {
+            @Override protected Connection connect () {
+                return outer.connect(new IntSlot() {
+                    @Override public void onEmit (int value) {
+                        if (filter.apply(value)) notifyEmit(value);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Emits the supplied event to all connected slots.
+     */
+    protected void notifyEmit (int event) {
+        dispatch(INT_EMIT, null, null, null, event, 0L);
+    }
+
+    /** Plumbing for mapped int signals; see {@link MappedSignal}. */
+    static abstract class Mapped extends AbstractIntSignal {
+        protected abstract Connection connect ();
+
+        @Override protected void connectionAdded () {
+            super.connectionAdded();
+            if (_conn == null) _conn = connect();
+        }
+
+        @Override protected void connectionRemoved () {
+            super.connectionRemoved();
+            if (!hasConnections() && _conn != null) {
+                _conn.disconnect();
+                _conn = null;
+            }
+        }
+
+        protected Connection _conn;
+    }
+
+    protected static final Notifier INT_EMIT = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Slot<Integer> slot = (Slot<Integer>)lner;
+            slot.onEmit((Integer)a1);
+        }
+        @Override public void dispatch (Object lner, Object a1, Object a2, Object a3,
+                                        long p1, long p2) {
+            if (lner instanceof IntSlot) ((IntSlot)lner).onEmit((int)p1);
+            else dispatch(lner, Integer.valueOf((int)p1), null, null);
+        }
+    };
+}
@@ -0,0 +1,101 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * Handles the machinery of connecting slots to a long signal and emitting events to them,
+ * without exposing a public interface for emitting events. Slots that extend {@link LongSlot} are
+ * notified without boxing; other slots receive boxed events, so this may be used anywhere a {@code
+ * SignalView<Long>} is expected.
+ */
+public class AbstractLongSignal extends AbstractSignal<Long>
+{
+    /** Transforms a long event into another. See {@link #mapLong}. */
+    public interface Transform {
+        long apply (long value);
+    }
+
+    /** Selects long events. See {@link #filterLong}. */
+    public interface Filter {
+        boolean apply (long value);
+    }
+
+    /**
+     * Creates a signal that maps this signal via a function, without boxing. When this signal
+     * emits a value, the mapped signal will emit that value as transformed by the supplied
+     * function. The mapped signal will retain a connection to this signal for as long as it has
+     * connections of its own.
+     */
+    public AbstractLongSignal mapLong (final Transform func) {
+        final AbstractLongSignal outer = this;
+        return new Mapped() {
+            @Override protected Connection connect () {
+                return outer.connect(new LongSlot() {
+                    @Override public void onEmit (long value) {
+                        notifyEmit(func.apply(value));
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Creates a signal that emits, without boxing, only those events emitted by this signal which
+     * are accepted by the supplied filter. The filtered signal will retain a connection to this
+     * signal for as long as it has connections of its own.
+     */
+    public AbstractLongSignal filterLong (final Filter filter) {
+        final AbstractLongSignal outer = this;
+        return new Mapped() {
+            @Override protected Connection connect () {
+                return outer.connect(new LongSlot() {
+                    @Override public void onEmit (long value) {
+                        if (filter.apply(value)) notifyEmit(value);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Emits the supplied event to all connected slots.
+     */
+    protected void notifyEmit (long event) {
+        dispatch(LONG_EMIT, null, null, null, event, 0L);
+    }
+
+    /** Plumbing for mapped long signals; see {@link MappedSignal}. */
+    static abstract class Mapped extends AbstractLongSignal {
+        protected abstract Connection connect ();
+
+        @Override protected void connectionAdded () {
+            super.connectionAdded();
+            if (_conn == null) _conn = connect();
+        }
+
+        @Override protected void connectionRemoved () {
+            super.connectionRemoved();
+            if (!hasConnections() && _conn != null) {
+                _conn.disconnect();
+                _conn = null;
+            }
+        }
+
+        protected Connection _conn;
+    }
+
+    protected static final Notifier LONG_EMIT = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Slot<Long> slot = (Slot<Long>)lner;
+            slot.onEmit((Long)a1);
+        }
+        @Override public void dispatch (Object lner, Object a1, Object a2, Object a3,
+                                        long p1, long p2) {
+            if (lner instanceof LongSlot) ((LongSlot)lner).onEmit(p1);
+            else dispatch(lner, Long.valueOf(p1), null, null);
+        }
+    };
+}
@@ -5,27 +5,139 @@
 
 package react;
 
+import java.util.List;
+
 /**
  * Handles the machinery of connecting slots to a signal and emitting events to them, without
  * exposing a public interface for emitting events. This can be used by entities which wish to
  * expose a signal-like interface for listening, without allowing external callers to emit signals.
+ *
+ * <p>The operators that derive signals from this signal ({@link #map}, {@link #filter}, etc.) may
+ * be chained freely: a chain of operators is fused into a single signal, which connects directly to
+ * this signal and applies the whole chain to each event. Fusion stops at an operator that retains
+ * state ({@link #scan} or {@link #debounce}, for example): operators applied after it connect to
+ * its signal, so every signal derived from it shares its state. A derived signal retains a
+ * connection to this signal for as long as it has connections of its own. Operators that retain
+ * state start afresh each time a derived signal connects, and those that hold events discard them
+ * when it disconnects.</p>
+ *
+ * <p>The time-based operators obtain the time from, and schedule their emissions via, a supplied
+ * {@link Clock}, so that they may be driven by a frame loop, an executor, or a test.</p>
  */
 public class AbstractSignal<T> extends Reactor<Slot<T>>
     implements SignalView<T>
 {
-    @Override public <M> SignalView<M> map (final Function<? super T, M> func) {
+    @Override public <M> AbstractSignal<M> map (Function<? super T, M> func) {
+        return fuse(OpSignal.Op.map(func));
+    }
+
+    /**
+     * Creates a signal that emits the events of this signal for which {@code pred} returns true.
+     */
+    public AbstractSignal<T> filter (Function<? super T, Boolean> pred) {
+        return fuse(OpSignal.Op.filter(pred));
+    }
+
+    /**
+     * Creates a signal that maps this signal via a partial function: {@code func} returns null for
+     * events to which it does not apply, which are not emitted. This combines {@link #filter} and
+     * {@link #map} in a single step.
+     */
+    public <M> AbstractSignal<M> collect (Function<? super T, M> func) {
+        return fuse(OpSignal.Op.collect(func));
+    }
+
+    /**
+     * Creates a signal that emits the events of this signal that are not equal to the event that
+     * preceded them.
+     */
+    public AbstractSignal<T> distinctUntilChanged () {
+        return fuse(OpSignal.Op.distinct());
+    }
+
+    /**
+     * Creates a signal that emits a running accumulation of the events of this signal: for each
+     * event, it emits {@code func} applied to the previously emitted accumulation (or {@code seed})
+     * and that event.
+     */
+    public <A> AbstractSignal<A> scan (A seed, Function2<? super A, ? super T, A> func) {
+        return fuse(OpSignal.Op.scan(seed, func));
+    }
+
+    /**
+     * Creates a value that contains a running accumulation of the events of this signal, like
+     * {@link #scan}. The value accumulates only while it has connections, but retains its
+     * accumulation when it is disconnected.
+     */
+    public <A> ValueView<A> fold (final A seed, final Function2<? super A, ? super T, A> func) {
         final AbstractSignal<T> outer = this;
-        return new MappedSignal<M>() {
+        return new MappedValue<A>() {
+            @Override public A get () {
+                noteRead();
+                return _value;
+            }
+            @Override protected A updateLocal (A value) {
+                A ovalue = _value;
+                _value = value;
+                return ovalue;
+            }
             @Override protected Connection connect () {
                 return outer.connect(new Slot<T>() {
-                    @Override public void onEmit (T value) {
-                        notifyEmit(func.apply(value));
+                    @Override public void onEmit (T event) {
+                        updateAndNotifyIf(func.apply(_value, event));
                     }
                 });
             }
+            protected A _value = seed;
         };
     }
 
+    /**
+     * Creates a signal that emits the events of this signal in lists of {@code count} events.
+     */
+    public AbstractSignal<List<T>> buffer (int count) {
+        return fuse(OpSignal.Op.buffer(count));
+    }
+
+    /**
+     * Creates a signal that emits the events of this signal in lists, each containing the events
+     * emitted in the {@code span} milliseconds after the first event it contains. The lists are
+     * emitted by actions run by {@code clock}, on its thread (see {@link Clock}).
+     */
+    public AbstractSignal<List<T>> buffer (long span, Clock clock) {
+        return fuse(OpSignal.Op.buffer(span, clock));
+    }
+
+    /**
+     * Creates a signal that emits an event of this signal once {@code delay} milliseconds have
+     * elapsed without this signal emitting another event. Thus only the last of a rapid
+     * succession of events is emitted, once the succession ends. Events are emitted by actions
+     * run by {@code clock}, on its thread (see {@link Clock}).
+     */
+    public AbstractSignal<T> debounce (long delay, Clock clock) {
+        return fuse(OpSignal.Op.debounce(delay, clock));
+    }
+
+    /**
+     * Creates a signal that emits an event of this signal, then ignores this signal's events until
+     * {@code interval} milliseconds have elapsed. Thus the first of a rapid succession of events
+     * is emitted, immediately, followed by at most one event per interval. Only the time is
+     * obtained from {@code clock}, so events are emitted on the thread that emits this signal's.
+     */
+    public AbstractSignal<T> throttle (long interval, Clock clock) {
+        return fuse(OpSignal.Op.throttle(interval, clock));
+    }
+
+    /**
+     * Creates a signal that emits the latest event of this signal, {@code interval} milliseconds
+     * after the earliest event not yet sampled. Thus at most one event per interval is emitted,
+     * and none when this signal is idle. Events are emitted by actions run by {@code clock}, on
+     * its thread (see {@link Clock}).
+     */
+    public AbstractSignal<T> sample (long interval, Clock clock) {
+        return fuse(OpSignal.Op.sample(interval, clock));
+    }
+
     @Override public Connection connect (Slot<? super T> slot) {
         return addConnection(slot);
     }
@@ -39,25 +151,24 @@ public class AbstractSignal<T> extends Reactor<Slot<T>>
         return p;
     }
 
+    /**
+     * Returns a signal that applies {@code op} to our events. See {@link OpSignal}.
+     */
+    <M> AbstractSignal<M> fuse (OpSignal.Op op) {
+        return new OpSignal<M>(this, new OpSignal.Op[] { op });
+    }
+
     /**
      * Emits the supplied event to all connected slots.
      */
     protected void notifyEmit (T event) {
-        Cons<Slot<T>> lners = prepareNotify();
-        MultiFailureException error = null;
-        try {
-            for (Cons<Slot<T>> cons = lners; cons != null; cons = cons.next) {
-                try {
-                    cons.listener().onEmit(event);
-                } catch (Throwable t) {
-                    if (error == null) error = new MultiFailureException();
-                    error.addFailure(t);
-                }
-                if (cons.oneShot()) cons.disconnect();
-            }
-        } finally {
-            finishNotify(lners);
-        }
-        if (error != null) error.trigger();
+        dispatch(EMIT, event, null, null);
     }
+
+    protected static final Notifier EMIT = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Slot<Object> l = (Slot<Object>)lner;
+            l.onEmit(a1);
+        }
+    };
 }
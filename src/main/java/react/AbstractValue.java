@@ -18,18 +18,74 @@ public abstract class AbstractValue<T> extends Reactor<ValueView.Listener<T>>
         final AbstractValue<T> outer = this;
         return new MappedValue<M>() {
             @Override public M get () {
-                return func.apply(outer.get());
+                noteRead();
+                // a computed value reading us depends on us, not on our source
+                Computed<?> computed = Computed.suspend();
+                try {
+                    return func.apply(outer.get());
+                } finally {
+                    Computed.resume(computed);
+                }
             }
             @Override protected Connection connect () {
-                return outer.connect(new Listener<T>() {
+                Connection conn = outer.connect(new SourceListener<T>() {
                     @Override public void onChange (T value, T ovalue) {
+                        forward(outer);
                         notifyChange(func.apply(value), func.apply(ovalue));
                     }
                 });
+                _rank = rankOf(outer) + 1;
+                return conn;
             }
         };
     }
 
+    /**
+     * Creates a value that maps this value via a function, and caches the result. Unlike {@link
+     * #map}, the function is applied once per change to this value (rather than to both the new
+     * and old value), {@link #get} returns the cached result while the mapped value has
+     * connections, and the mapped listeners are notified only if the new and old mapped values
+     * differ (per {@link Object#equals}). Thus a change that does not affect the mapped value goes
+     * no further down a chain of such values. The function should be free of side effects.
+     */
+    public <M> AbstractValue<M> mapMemo (final Function<? super T, M> func) {
+        final AbstractValue<T> outer = this;
+        return new MappedValue<M>() {
+            @Override public M get () {
+                noteRead();
+                // while we're connected, our cached value is kept up to date
+                if (_conn != null) return _value;
+                Computed<?> computed = Computed.suspend();
+                try {
+                    return func.apply(outer.get());
+                } finally {
+                    Computed.resume(computed);
+                }
+            }
+            @Override protected M updateLocal (M value) {
+                M ovalue = _value;
+                _value = value;
+                return ovalue;
+            }
+            @Override protected Connection connect () {
+                Connection conn = outer.connect(new SourceListener<T>() {
+                    @Override public void onChange (T value, T ovalue) {
+                        forward(outer);
+                        updateAndNotifyIf(func.apply(value));
+                    }
+                });
+                _value = func.apply(outer.get());
+                _rank = rankOf(outer) + 1;
+                return conn;
+            }
+            @Override protected void connectionRemoved () {
+                super.connectionRemoved();
+                if (_conn == null) _value = null;
+            }
+            protected M _value;
+        };
+    }
+
     @Override public Connection connect (Listener<? super T> listener) {
         return addConnection(listener);
     }
@@ -79,6 +135,34 @@ public abstract class AbstractValue<T> extends Reactor<ValueView.Listener<T>>
         return p;
     }
 
+    /**
+     * Configures this value to conflate its change notifications: rather than notifying its
+     * listeners of each change, it is marked dirty and queued on {@code scheduler}, and its
+     * listeners are notified once, of the change from the value they last observed to the latest
+     * value, when the scheduler is flushed. If the value is changed back to the value they last
+     * observed before the flush, they are not notified. Passing null restores immediate
+     * notification (a change already queued is still delivered by the flush).
+     */
+    public void setScheduler (ReactScheduler scheduler) {
+        _scheduler = scheduler;
+    }
+
+    /**
+     * Returns the scheduler to which this value's change notifications are deferred, or null.
+     */
+    public ReactScheduler scheduler () {
+        return _scheduler;
+    }
+
+    /**
+     * Notes that this value is being read, so that a {@link Computed} value that is being
+     * evaluated on this thread will depend on it. Implementations of {@link #get} should call
+     * this.
+     */
+    protected final void noteRead () {
+        if (Platform.anyEvaluating()) Computed.noteRead(this);
+    }
+
     /**
      * Updates the value contained in this instance and notifies registered listeners iff said
      * value is not equal to the value already contained in this instance (per {@link #areEqual}).
@@ -111,32 +195,35 @@ public abstract class AbstractValue<T> extends Reactor<ValueView.Listener<T>>
     }
 
     /**
-     * Emits a change notification. Default implementation immediately notifies listeners.
+     * Emits a change notification. Default implementation immediately notifies listeners, unless
+     * we have a scheduler, in which case the change is deferred (see {@link #setScheduler}).
      */
     protected void emitChange (T value, T ovalue) {
-        notifyChange(value, ovalue);
+        if (_scheduler != null) deferChange(ovalue);
+        else notifyChange(value, ovalue);
+    }
+
+    /**
+     * Queues this value to be flushed by our scheduler, noting {@code ovalue} as the value last
+     * observed by our listeners, if we are not already queued.
+     */
+    protected void deferChange (T ovalue) {
+        if (_deferred) return;
+        _delivered = ovalue;
+        _scheduler.defer(this);
+    }
+
+    @Override protected void flushDeferred () {
+        T ovalue = _delivered, value = get();
+        _delivered = null;
+        if (!areEqual(value, ovalue)) notifyChange(value, ovalue);
     }
 
     /**
      * Notifies our listeners of a value change.
      */
     protected void notifyChange (T value, T ovalue) {
-        Cons<Listener<T>> lners = prepareNotify();
-        MultiFailureException error = null;
-        try {
-            for (Cons<Listener<T>> cons = lners; cons != null; cons = cons.next) {
-                try {
-                    cons.listener().onChange(value, ovalue);
-                } catch (Throwable t) {
-                    if (error == null) error = new MultiFailureException();
-                    error.addFailure(t);
-                }
-                if (cons.oneShot()) cons.disconnect();
-            }
-        } finally {
-            finishNotify(lners);
-        }
-        if (error != null) error.trigger();
+        dispatch(CHANGE, value, ovalue, null);
     }
 
     /**
@@ -146,4 +233,14 @@ public abstract class AbstractValue<T> extends Reactor<ValueView.Listener<T>>
     protected T updateLocal (T value) {
         throw new UnsupportedOperationException();
     }
+
+    /** The value last observed by our listeners, while we are queued to be flushed. */
+    protected T _delivered;
+
+    protected static final Notifier CHANGE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            l.onChange(a1, a2);
+        }
+    };
 }
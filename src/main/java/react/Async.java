@@ -0,0 +1,337 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import react.AsyncConnection.Backpressure;
+
+/**
+ * Provides connections whose slots and listeners are notified asynchronously, via an {@link
+ * Executor} (a thread pool, a single thread actor, or one virtual thread per task, for example).
+ * The emitting thread appends each event to the connection's bounded queue, and a task run by the
+ * executor delivers the queued events, in order. Only one such task runs at a time per connection,
+ * so a slot is never notified concurrently with itself, while slots on different connections may
+ * be notified concurrently. Thus a slow slot lags behind on its own, rather than stalling the
+ * emitting thread and every other slot. What happens when an event is emitted to a connection
+ * whose queue is full is determined by the connection's {@link AsyncConnection.Backpressure}
+ * policy; thus memory use is bounded regardless of how far a slot lags. Asynchronous connections
+ * are always held strongly (see {@link AsyncConnection#holdWeakly}).
+ *
+ * <p>If a slot throws, the failure is handled per the failure policy of the reactor to which it is
+ * connected (see {@link Reactor#setFailurePolicy}). Failures that the policy would throw are
+ * thrown to the executor, once delivery of any remaining events has been resumed in a new
+ * task.</p>
+ *
+ * <p>This class is not available in GWT.</p>
+ */
+public class Async
+{
+    /**
+     * Connects {@code slot} to {@code signal} such that events are delivered to it by {@code
+     * executor}, via a queue of up to {@code capacity} events.
+     */
+    public static <T> AsyncConnection connect (SignalView<T> signal, Executor executor,
+                                               int capacity, Slot<? super T> slot) {
+        return connect(signal, executor, capacity, Backpressure.BLOCK, slot);
+    }
+
+    /**
+     * Connects {@code slot} to {@code signal} such that events are delivered to it by {@code
+     * executor}, via a queue of up to {@code capacity} events, which overflows per {@code
+     * backpressure}.
+     */
+    public static <T> AsyncConnection connect (
+        SignalView<T> signal, Executor executor, int capacity, Backpressure backpressure,
+        final Slot<? super T> slot) {
+        if (slot == null) throw new NullPointerException("Null slot");
+        final Delivery delivery = new Delivery(signal, executor, capacity, backpressure) {
+            @Override protected void deliver (Object a1, Object a2) {
+                @SuppressWarnings("unchecked") T event = (T)a1;
+                slot.onEmit(event);
+            }
+        };
+        delivery.bind(signal.connect(new Slot<T>() {
+            public void onEmit (T event) {
+                delivery.offer(event, null);
+            }
+        }));
+        return delivery;
+    }
+
+    /**
+     * Connects {@code listener} to {@code value} such that changes are delivered to it by {@code
+     * executor}, via a queue of up to {@code capacity} changes.
+     */
+    public static <T> AsyncConnection connect (ValueView<T> value, Executor executor, int capacity,
+                                               ValueView.Listener<? super T> listener) {
+        return connect(value, executor, capacity, Backpressure.BLOCK, listener);
+    }
+
+    /**
+     * Connects {@code listener} to {@code value} such that changes are delivered to it by {@code
+     * executor}, via a queue of up to {@code capacity} changes, which overflows per {@code
+     * backpressure}.
+     */
+    public static <T> AsyncConnection connect (
+        ValueView<T> value, Executor executor, int capacity, Backpressure backpressure,
+        final ValueView.Listener<? super T> listener) {
+        if (listener == null) throw new NullPointerException("Null listener");
+        final Delivery delivery = new Delivery(value, executor, capacity, backpressure) {
+            @Override protected void deliver (Object a1, Object a2) {
+                @SuppressWarnings("unchecked") T nvalue = (T)a1;
+                @SuppressWarnings("unchecked") T ovalue = (T)a2;
+                listener.onChange(nvalue, ovalue);
+            }
+        };
+        delivery.bind(value.connect(new ValueView.Listener<T>() {
+            public void onChange (T nvalue, T ovalue) {
+                delivery.offer(nvalue, ovalue);
+            }
+        }));
+        return delivery;
+    }
+
+    /**
+     * Returns a clock (for use with the time-based signal operators, see {@link Clock}) that runs
+     * actions via {@code executor}. Note that the actions emit events on the executor's thread,
+     * so a single threaded executor that also emits the events of the operators' source signals
+     * is generally appropriate. Otherwise see {@link #clock(ScheduledExecutorService,Executor)}.
+     */
+    public static Clock clock (ScheduledExecutorService executor) {
+        return clock(executor, null);
+    }
+
+    /**
+     * Returns a clock (for use with the time-based signal operators, see {@link Clock}) that waits
+     * via {@code timer}, then hands each action to {@code emitter} to be run. Thus the operators
+     * emit their events on the thread (or frame loop) of {@code emitter}, which should be the one
+     * that emits the events of the operators' source signals, regardless of {@code timer}'s
+     * thread. If {@code emitter} is null, actions are run on {@code timer}'s thread.
+     */
+    public static Clock clock (final ScheduledExecutorService timer, final Executor emitter) {
+        if (timer == null) throw new NullPointerException("Null timer");
+        return new Clock() {
+            public long now () {
+                return System.nanoTime() / 1000000L;
+            }
+            public void schedule (long delay, final Runnable action) {
+                Runnable task = (emitter == null) ? action : new Runnable() {
+                    public void run () {
+                        emitter.execute(action);
+                    }
+                };
+                timer.schedule(task, delay, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+
+    /** Queues events emitted by a reactor, and delivers them via an executor. */
+    protected static abstract class Delivery implements AsyncConnection, Runnable {
+        public Delivery (Object source, Executor executor, int capacity,
+                         Backpressure backpressure) {
+            if (executor == null) throw new NullPointerException("Null executor");
+            if (backpressure == null) throw new NullPointerException("Null backpressure");
+            if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+            _source = (source instanceof Reactor<?>) ? (Reactor<?>)source : null;
+            _executor = executor;
+            _backpressure = backpressure;
+            _events = new Object[capacity*2];
+        }
+
+        public void bind (Connection conn) {
+            _conn = conn;
+        }
+
+        /**
+         * Appends an event to our queue (or handles its overflow per our backpressure policy), and
+         * schedules its delivery.
+         */
+        public void offer (Object a1, Object a2) {
+            synchronized (this) {
+                if (!_closed && _count == capacity()) {
+                    switch (_backpressure) {
+                    case DROP_NEWEST:
+                        _dropped++;
+                        return;
+                    case DROP_OLDEST:
+                        _dropped++;
+                        _events[2*_head] = _events[2*_head+1] = null;
+                        _head = (_head + 1) % capacity();
+                        _count--;
+                        break;
+                    case KEEP_LATEST:
+                        _conflated++;
+                        _events[2*((_head + _count - 1) % capacity())] = a1;
+                        break;
+                    default:
+                    case BLOCK:
+                        awaitSpace();
+                        break;
+                    }
+                }
+                if (_closed) return;
+                if (_count < capacity()) {
+                    int tail = (_head + _count) % capacity();
+                    _events[2*tail] = a1;
+                    _events[2*tail+1] = a2;
+                    _count++;
+                }
+                if (_scheduled) return;
+                _scheduled = true;
+            }
+            execute();
+        }
+
+        /**
+         * Delivers queued events, up to our capacity's worth (after which we yield the executor to
+         * other tasks and continue in a new task).
+         */
+        public void run () {
+            synchronized (this) {
+                _deliverer = Thread.currentThread();
+            }
+            for (int ii = 0, ll = capacity(); ii < ll; ii++) {
+                Object a1, a2;
+                synchronized (this) {
+                    if (_count == 0 || _closed) {
+                        _scheduled = false;
+                        _deliverer = null;
+                        return;
+                    }
+                    a1 = _events[2*_head];
+                    a2 = _events[2*_head+1];
+                    _events[2*_head] = _events[2*_head+1] = null;
+                    _head = (_head + 1) % capacity();
+                    _count--;
+                    notifyAll(); // wake any blocked emitters
+                }
+                try {
+                    deliver(a1, a2);
+                } catch (Throwable t) {
+                    resume();
+                    Reactor.FailurePolicy policy = (_source == null) ?
+                        Reactor.FailurePolicy.COLLECT : _source.failurePolicy();
+                    MultiFailureException error = policy.onFailure(_source, null, t);
+                    if (error != null) error.trigger();
+                    return;
+                }
+            }
+            resume();
+        }
+
+        public synchronized int queueDepth () {
+            return _count;
+        }
+
+        public int capacity () {
+            return _events.length/2;
+        }
+
+        public Backpressure backpressure () {
+            return _backpressure;
+        }
+
+        public synchronized long dropped () {
+            return _dropped;
+        }
+
+        public synchronized long conflated () {
+            return _conflated;
+        }
+
+        public void disconnect () {
+            _conn.disconnect();
+            synchronized (this) {
+                // discard any undelivered events
+                _closed = true;
+                for (int ii = 0; ii < _events.length; ii++) _events[ii] = null;
+                _count = 0;
+                notifyAll();
+            }
+        }
+
+        public AsyncConnection once () {
+            _conn.once();
+            return this;
+        }
+
+        public AsyncConnection atPriority (int priority) {
+            _conn.atPriority(priority);
+            return this;
+        }
+
+        public AsyncConnection holdWeakly () {
+            // our slot is referenced only by our connection, so would be collected immediately
+            return this; // noop
+        }
+
+        /** Delivers an event to our slot or listener. */
+        protected abstract void deliver (Object a1, Object a2);
+
+        /** Blocks until our queue has room (or we are disconnected). Must hold our lock. */
+        protected void awaitSpace () {
+            while (_count == capacity() && !_closed) {
+                if (_deliverer == Thread.currentThread()) throw new IllegalStateException(
+                    "Slot emitted to a full queue from which it is being notified");
+                try {
+                    wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted awaiting queue space", ie);
+                }
+            }
+        }
+
+        /** Ends a delivery task, scheduling another if events remain to be delivered. */
+        protected void resume () {
+            synchronized (this) {
+                _deliverer = null;
+                if (_count == 0 || _closed) {
+                    _scheduled = false;
+                    return;
+                }
+            }
+            execute();
+        }
+
+        protected void execute () {
+            try {
+                _executor.execute(this);
+            } catch (RuntimeException re) {
+                synchronized (this) {
+                    _scheduled = false;
+                }
+                throw re;
+            }
+        }
+
+        protected final Reactor<?> _source;
+        protected final Executor _executor;
+        protected final Backpressure _backpressure;
+        protected Connection _conn;
+
+        /** The number of events dropped or conflated per our backpressure policy. */
+        protected long _dropped, _conflated;
+
+        /** A ring buffer of queued events, two slots per event. */
+        protected final Object[] _events;
+        protected int _head, _count;
+
+        /** Whether a delivery task is scheduled or running. */
+        protected boolean _scheduled;
+
+        /** Whether we have been disconnected. */
+        protected boolean _closed;
+
+        /** The thread running our delivery task, if it is running. */
+        protected Thread _deliverer;
+    }
+
+    private Async () {} // no constructski
+}
@@ -0,0 +1,72 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * A connection whose slot or listener is notified asynchronously, via a bounded queue. See {@link
+ * Async}.
+ */
+public interface AsyncConnection extends Connection
+{
+    /** Determines what happens when an event is emitted to a connection whose queue is full. */
+    enum Backpressure {
+        /** The emitting thread blocks until there is room in the queue. This is the default. A
+         * slot that emits to its own full queue, while being notified by that connection, fails
+         * with an {@link IllegalStateException} rather than waiting forever. That is the only
+         * deadlock detected: a cycle through other connections (two slots that emit to each
+         * other's full queues, say), or an emitter holding a lock that its slot needs, blocks
+         * for good. */
+        BLOCK,
+
+        /** The oldest queued event is discarded to make room for the new event. */
+        DROP_OLDEST,
+
+        /** The new event is discarded. */
+        DROP_NEWEST,
+
+        /** The new event replaces the most recently queued event. For value listeners, the
+         * replaced change's old value is retained, so the listener is notified of a single change
+         * from the first old value to the latest value. */
+        KEEP_LATEST
+    }
+
+    /**
+     * Returns the number of events queued for delivery.
+     */
+    int queueDepth ();
+
+    /**
+     * Returns the maximum number of events that may be queued for delivery.
+     */
+    int capacity ();
+
+    /**
+     * Returns the policy that governs events emitted while our queue is full.
+     */
+    Backpressure backpressure ();
+
+    /**
+     * Returns the number of events discarded per {@link Backpressure#DROP_OLDEST} or {@link
+     * Backpressure#DROP_NEWEST}.
+     */
+    long dropped ();
+
+    /**
+     * Returns the number of events replaced per {@link Backpressure#KEEP_LATEST}.
+     */
+    long conflated ();
+
+    @Override AsyncConnection once ();
+
+    @Override AsyncConnection atPriority (int priority);
+
+    /**
+     * Does nothing, and returns this connection. The slot or listener of an asynchronous
+     * connection is referenced only by the connection itself, so if it were held weakly it would
+     * be collected, and silently disconnected, at once.
+     */
+    @Override AsyncConnection holdWeakly ();
+}
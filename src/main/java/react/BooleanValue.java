@@ -0,0 +1,152 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * A {@link Value} specialized for booleans. The value is stored unboxed, and listeners that extend
+ * {@link BooleanValue.Listener} are notified of changes without boxing. Other listeners (and {@link
+ * #get}) see boxed values, so this may be used anywhere a {@code Value<Boolean>} is expected.
+ *
+ * <p>Boxed updates, and the {@link #toggle} helper, pass through {@link
+ * #updateAndNotify(Object,boolean)} and {@link #emitChange(Object,Object)} as with any value. The
+ * unboxed {@link #update(boolean)} and {@link #updateForce(boolean)} bypass those hooks, and
+ * instead pass through {@link #updateAndNotifyBoolean} and {@link #emitChange(boolean,boolean)},
+ * which a subclass that intercepts changes must also override. All changes are notified via {@link
+ * #notifyChange(boolean,boolean)}.</p>
+ *
+ * <p>The current value is held in {@link #_pvalue}. The inherited {@link Value#_value} is not used,
+ * and remains null.</p>
+ */
+public class BooleanValue extends Value<Boolean>
+{
+    /**
+     * Used to observe changes to a boolean value without boxing.
+     */
+    public static abstract class Listener extends ValueView.Listener<Boolean> {
+        /**
+         * Called when the value to which this listener is bound has changed.
+         */
+        public abstract void onChange (boolean value, boolean oldValue);
+
+        /**
+         * Unboxes the supplied values and passes them to {@link #onChange(boolean,boolean)}. A null
+         * old value (as supplied by {@link ValueView#connectNotify}) is passed as {@code false}.
+         */
+        @Override public final void onChange (Boolean value, Boolean oldValue) {
+            onChange(value.booleanValue(), (oldValue == null) ? false : oldValue.booleanValue());
+        }
+    }
+
+    /**
+     * Creates an instance with the specified starting value.
+     */
+    public BooleanValue (boolean value) {
+        super(null);
+        _pvalue = value;
+    }
+
+    /**
+     * Returns the current value, without boxing.
+     */
+    public boolean getBoolean () {
+        noteRead();
+        return _pvalue;
+    }
+
+    /**
+     * Updates this instance with the supplied value. Registered listeners are notified only if the
+     * value differs from the current value.
+     * @return the previous value contained by this instance.
+     */
+    public boolean update (boolean value) {
+        return updateAndNotifyBoolean(value, false);
+    }
+
+    /**
+     * Updates this instance with the supplied value. Registered listeners are notified regardless
+     * of whether the new value is equal to the old value.
+     * @return the previous value contained by this instance.
+     */
+    public boolean updateForce (boolean value) {
+        return updateAndNotifyBoolean(value, true);
+    }
+
+    /**
+     * Inverts this value.
+     * @return the new value. Note that this differs from {@link #update}, which returns the
+     * previous value.
+     */
+    public boolean toggle () {
+        boolean value = !_pvalue;
+        update(Boolean.valueOf(value));
+        return value;
+    }
+
+    @Override public Boolean get () {
+        noteRead();
+        return _pvalue;
+    }
+
+    /**
+     * Updates the value contained in this instance and notifies registered listeners if it
+     * changed, or if {@code force} is true.
+     * @return the previously contained value.
+     */
+    protected boolean updateAndNotifyBoolean (boolean value, boolean force) {
+        checkMutate();
+        boolean ovalue = _pvalue;
+        _pvalue = value;
+        if (force || value != ovalue) {
+            emitChange(value, ovalue);
+        }
+        return ovalue;
+    }
+
+    /**
+     * Emits a change notification. Default implementation immediately notifies listeners, unless
+     * we have a scheduler, in which case the change is deferred (see {@link #deferChange}).
+     */
+    protected void emitChange (boolean value, boolean ovalue) {
+        if (_scheduler != null) deferChange(ovalue);
+        else notifyChange(value, ovalue);
+    }
+
+    /**
+     * Notifies our listeners of a value change.
+     */
+    protected void notifyChange (boolean value, boolean ovalue) {
+        dispatch(BOOLEAN_CHANGE, null, null, null, value ? 1L : 0L, ovalue ? 1L : 0L);
+    }
+
+    /**
+     * Passes changes made via the boxed hooks (and deferred changes) to {@link
+     * #notifyChange(boolean,boolean)}, so that every change is notified in the same way.
+     */
+    @Override protected void notifyChange (Boolean value, Boolean ovalue) {
+        notifyChange(value.booleanValue(), ovalue.booleanValue());
+    }
+
+    @Override protected Boolean updateLocal (Boolean value) {
+        boolean ovalue = _pvalue;
+        _pvalue = value;
+        return ovalue;
+    }
+
+    protected boolean _pvalue;
+
+    protected static final Notifier BOOLEAN_CHANGE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") ValueView.Listener<Boolean> l =
+                (ValueView.Listener<Boolean>)lner;
+            l.onChange((Boolean)a1, (Boolean)a2);
+        }
+        @Override public void dispatch (Object lner, Object a1, Object a2, Object a3,
+                                        long p1, long p2) {
+            if (lner instanceof Listener) ((Listener)lner).onChange(p1 != 0, p2 != 0);
+            else dispatch(lner, Boolean.valueOf(p1 != 0), Boolean.valueOf(p2 != 0), null);
+        }
+    };
+}
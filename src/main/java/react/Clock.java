@@ -0,0 +1,28 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * Provides the time, and runs actions after a delay, for the time-based signal operators (see
+ * {@link AbstractSignal#debounce}, for example). A game might implement this atop its frame loop, a
+ * server atop a scheduled executor (see {@code Async.clock}), and a test atop a manually advanced
+ * time, so that time-based behavior can be tested deterministically.
+ *
+ * <p>Scheduled actions emit events from the signals that scheduled them, so they should be run
+ * on the thread that emits the events of those signals' sources.</p>
+ */
+public interface Clock
+{
+    /**
+     * Returns the current time, in milliseconds. The epoch is arbitrary, but must not change.
+     */
+    long now ();
+
+    /**
+     * Arranges for {@code action} to be run once, {@code delay} milliseconds from now.
+     */
+    void schedule (long delay, Runnable action);
+}
@@ -0,0 +1,167 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A value computed from other values, whose dependencies are tracked automatically. For example:
+ *
+ * <pre>{@code
+ * ValueView<String> label = new Computed<String>() {
+ *     protected String compute () {
+ *         return showName.get() ? name.get() : id.get().toString();
+ *     }
+ * };
+ * }</pre>
+ *
+ * <p>While a computed value has connections, it is connected to exactly those values that were
+ * read (via {@link ValueView#get}) during its most recent evaluation, and is re-evaluated (once,
+ * after all of the values ranked below it, see {@link Propagation}) when one of them changes. If
+ * the result differs from the previous result, listeners are notified. In the example above, while
+ * {@code showName} is true, changes to {@code id} are ignored. {@link #get} returns the cached
+ * result while connected, and evaluates {@link #compute} on demand while not.</p>
+ *
+ * <p>Only reads of values that derive from {@link AbstractValue} are tracked. {@link #compute}
+ * should be free of side effects, and is evaluated on the thread that triggers evaluation.</p>
+ */
+public abstract class Computed<T> extends MappedValue<T>
+{
+    @Override public T get () {
+        noteRead();
+        // if we're queued to be re-evaluated, our cached value may be stale
+        return (_conn != null && !_queued) ? _value : evaluate(false);
+    }
+
+    /**
+     * Computes this value. Any values read by this method become dependencies of this value.
+     */
+    protected abstract T compute ();
+
+    @Override protected Connection connect () {
+        _value = evaluate(true);
+        resubscribe();
+        return new Connection() {
+            public void disconnect () {
+                for (Connection conn : _deps.values()) conn.disconnect();
+                _deps.clear();
+                _value = null;
+            }
+            public Connection once () {
+                return this; // noop
+            }
+            public Connection atPriority (int priority) {
+                return this; // noop
+            }
+            public Connection holdWeakly () {
+                return this; // noop
+            }
+        };
+    }
+
+    @Override protected void propagate () {
+        if (_conn == null) return; // we were disconnected while queued
+        T value = evaluate(true);
+        resubscribe();
+        updateAndNotifyIf(value);
+    }
+
+    @Override protected T updateLocal (T value) {
+        T ovalue = _value;
+        _value = value;
+        return ovalue;
+    }
+
+    /**
+     * Evaluates {@link #compute}, recording the values it reads in {@link #_reads} if {@code
+     * track}. A computed value being evaluated by the caller does not depend on values read by
+     * this evaluation.
+     */
+    protected T evaluate (boolean track) {
+        if (!track && !Platform.anyEvaluating()) return compute();
+        if (track) _reads.clear();
+        Computed<?> outer = Platform.evaluating();
+        Platform.addEvaluations(1);
+        Platform.setEvaluating(track ? this : null);
+        try {
+            return compute();
+        } finally {
+            Platform.setEvaluating(outer);
+            Platform.addEvaluations(-1);
+        }
+    }
+
+    /**
+     * Connects to the values read during our most recent evaluation that we are not already
+     * connected to, and disconnects from those that were not read.
+     */
+    protected void resubscribe () {
+        int rank = 0;
+        for (Map.Entry<AbstractValue<?>,Connection> entry : _reads.entrySet()) {
+            AbstractValue<?> dep = entry.getKey();
+            Connection conn = _deps.remove(dep);
+            entry.setValue((conn != null) ? conn : dep.connect(dependencyListener(dep)));
+            rank = Math.max(rank, rankOf(dep));
+        }
+        for (Connection conn : _deps.values()) conn.disconnect();
+        _deps.clear();
+        Map<AbstractValue<?>,Connection> deps = _deps;
+        _deps = _reads;
+        _reads = deps;
+        // if we now depend on a value ranked higher than any before, the values derived from us
+        // must be ranked higher as well
+        if (rank + 1 > _rank) raiseRank(rank + 1);
+        else _rank = rank + 1;
+    }
+
+    protected ValueView.Listener<Object> dependencyListener (final AbstractValue<?> dep) {
+        return new SourceListener<Object>() {
+            public void onChange (Object value, Object ovalue) {
+                sourceChanged(dep);
+            }
+        };
+    }
+
+    /**
+     * Records that {@code value} was read, if a computed value is being evaluated on this thread.
+     * See {@link AbstractValue#noteRead}.
+     */
+    static void noteRead (AbstractValue<?> value) {
+        Computed<?> computed = Platform.evaluating();
+        if (computed != null && computed != value) computed._reads.put(value, null);
+    }
+
+    /**
+     * Suspends dependency tracking on this thread, so that a value whose {@link #get} reads other
+     * values may make a computed value depend only on itself. Must be paired with {@link #resume}.
+     * @return the computed value whose tracking was suspended, if any.
+     */
+    static Computed<?> suspend () {
+        if (!Platform.anyEvaluating()) return null;
+        Computed<?> computed = Platform.evaluating();
+        if (computed != null) Platform.setEvaluating(null);
+        return computed;
+    }
+
+    /**
+     * Resumes dependency tracking suspended by {@link #suspend}.
+     */
+    static void resume (Computed<?> computed) {
+        if (computed != null) Platform.setEvaluating(computed);
+    }
+
+    /** Our most recently computed value, while we are connected. */
+    protected T _value;
+
+    /** Our dependencies, and our connections to them, while we are connected. */
+    protected Map<AbstractValue<?>,Connection> _deps =
+        new IdentityHashMap<AbstractValue<?>,Connection>();
+
+    /** The values read during our evaluation in progress (or most recently completed). */
+    protected Map<AbstractValue<?>,Connection> _reads =
+        new IdentityHashMap<AbstractValue<?>,Connection>();
+}
@@ -8,29 +8,37 @@ package react;
 import react.Reactor.RListener;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Implements {@link Connection} and a linked-list style listener list for {@link Reactor}s.
+ * Implements {@link Connection} and a copy-on-write, priority-sorted array style listener list for
+ * {@link Reactor}s.
  */
 class Cons<L extends RListener> implements Connection
 {
-    /** The next connection in our chain. */
-    public Cons<L> next;
-
     /** Indicates whether this connection is one-shot or persistent. */
     public final boolean oneShot () { return _oneShot; }
 
     /** Returns the listener for this cons cell. */
     public L listener () {
-        return _ref.get();
+        Object held = _held;
+        if (held instanceof WeakListener<?>) {
+            @SuppressWarnings("unchecked") WeakListener<L> weak = (WeakListener<L>)held;
+            return weakListener(weak);
+        }
+        @SuppressWarnings("unchecked") L listener = (L)held;
+        return listener;
     }
 
     @Override public void disconnect () {
-        // multiple disconnects are OK, we just NOOP after the first one
-        if (_owner != null) {
-            _owner.disconnect(this);
-            _owner = null;
-        }
+        // multiple (even concurrent) disconnects are OK, we just NOOP after the first one
+        Reactor<L> owner = Platform.clearOwner(this);
+        if (owner != null) owner.disconnect(this);
     }
 
     @Override public Connection once () {
@@ -39,83 +47,189 @@ class Cons<L extends RListener> implements Connection
     }
 
     @Override public Connection atPriority (int priority) {
-        if (_owner == null) throw new IllegalStateException(
+        Reactor<L> owner = _owner;
+        if (owner == null) throw new IllegalStateException(
             "Cannot change priority of disconnected connection.");
-        _owner.disconnect(this);
-        next = null;
+        owner.disconnect(this);
         _priority = priority;
-        _owner.addCons(this);
+        owner.addCons(this);
         return this;
     }
 
-    // Synchronize to make sure it's impossible to create a WeakListenerRef to the placeholder listener, as that
+    // Synchronize to make sure it's impossible to weakly reference the placeholder listener, as that
     // listener always has a strong reference
     @Override public synchronized Connection holdWeakly() {
-        if (_owner == null) throw new IllegalStateException("Cannot change disconnected connection to weak.");
-        if (!(_ref instanceof Cons.WeakListenerRef)) {
-            _ref = new WeakListenerRef();
+        Reactor<L> owner = _owner;
+        if (owner == null) throw new IllegalStateException("Cannot change disconnected connection to weak.");
+        // our listener and its weak reference are published via a single volatile field, so that
+        // a concurrent dispatch sees one or the other, never neither
+        if (!(_held instanceof WeakListener<?>)) {
+            @SuppressWarnings("unchecked") L listener = (L)_held;
+            _held = new WeakListener<L>(listener, owner.placeholderListener());
         }
         return this;
     }
 
     @Override public String toString () {
         return "[owner=" + _owner + ", pri=" + _priority + ", lner=" + listener() +
-            ", hasNext=" + (next != null) + ", oneShot=" + oneShot() + "]";
+            ", oneShot=" + oneShot() + "]";
+    }
+
+    /** Weakly references a listener, and supplies a NOOP stand-in once it has been collected. */
+    static class WeakListener<L extends RListener> extends WeakReference<L> {
+        public final L placeholder;
+        public WeakListener (L listener, L placeholder) {
+            super(listener);
+            this.placeholder = placeholder;
+        }
     }
 
-    interface ListenerRef<L extends RListener> {
-        abstract L get();
+    protected Cons (Reactor<L> owner, L listener) {
+        _owner = owner;
+        _held = listener;
     }
 
-    class WeakListenerRef implements ListenerRef<L> {
-        private final WeakReference<L> _weak = new WeakReference<L>(_ref.get());
-        public L get() {
-            L listener = _weak.get();
-            if (listener == null) {
-                listener = _owner.placeholderListener();
-                disconnect();
-            }
-            return listener;
+    private L weakListener (WeakListener<L> weak) {
+        L listener = weak.get();
+        if (listener == null) {
+            listener = weak.placeholder;
+            disconnect();
         }
+        return listener;
     }
 
-    protected Cons (Reactor<L> owner, final L listener) {
-        _owner = owner;
-        _ref = new ListenerRef<L>() {
-            @Override public L get() {
-                return listener;
-            }
-        };
-    }
-
-    static <L extends RListener> Cons<L> insert (Cons<L> head, Cons<L> cons) {
-        if (head == null) {
-            return cons;
-        } else if (head._priority > cons._priority) {
-            cons.next = head;
-            return cons;
-        } else {
-            head.next = insert(head.next, cons);
-            return head;
+    /** Returns the (shared) empty listener list. */
+    static <L extends RListener> Cons<L>[] emptyList () {
+        @SuppressWarnings("unchecked") Cons<L>[] empty = (Cons<L>[])EMPTY;
+        return empty;
+    }
+
+    /** Returns a copy of {@code list} with {@code cons} inserted after all connections of equal
+     * or lower priority. */
+    static <L extends RListener> Cons<L>[] insert (Cons<L>[] list, Cons<L> cons) {
+        int low = 0, high = list.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list[mid]._priority > cons._priority) high = mid;
+            else low = mid + 1;
         }
+        Cons<L>[] nlist = newList(list.length + 1);
+        System.arraycopy(list, 0, nlist, 0, low);
+        nlist[low] = cons;
+        System.arraycopy(list, low, nlist, low + 1, list.length - low);
+        return nlist;
     }
 
-    static <L extends RListener> Cons<L> remove (Cons<L> head, Cons<L> cons) {
-        if (head == null) return head;
-        if (head == cons) return head.next;
-        head.next = remove(head.next, cons);
-        return head;
+    /** Returns a copy of {@code list} without {@code cons}, or {@code list} itself if it does not
+     * contain {@code cons}. */
+    static <L extends RListener> Cons<L>[] remove (Cons<L>[] list, Cons<L> cons) {
+        for (int ii = 0, ll = list.length; ii < ll; ii++) {
+            if (list[ii] != cons) continue;
+            if (ll == 1) return emptyList();
+            Cons<L>[] nlist = newList(ll - 1);
+            System.arraycopy(list, 0, nlist, 0, ii);
+            System.arraycopy(list, ii + 1, nlist, ii, ll - ii - 1);
+            return nlist;
+        }
+        return list;
     }
 
-    static <L extends RListener> Cons<L> removeAll (Cons<L> head, L listener) {
-        if (head == null) return null;
-        if (head.listener() == listener) return removeAll(head.next, listener);
-        head.next = removeAll(head.next, listener);
-        return head;
+    /** Returns a copy of {@code list} without any connections to {@code listener}, or {@code list}
+     * itself if no such connections exist. */
+    static <L extends RListener> Cons<L>[] removeAll (Cons<L>[] list, L listener) {
+        // find the first connection to drop, so that we copy nothing if there is none
+        int ll = list.length, first = 0;
+        while (first < ll && retains(list[first], listener)) first++;
+        if (first == ll) return list;
+        Cons<L>[] nlist = newList(ll - 1);
+        System.arraycopy(list, 0, nlist, 0, first);
+        int count = first;
+        for (int ii = first + 1; ii < ll; ii++) {
+            if (retains(list[ii], listener)) nlist[count++] = list[ii];
+        }
+        if (count == 0) return emptyList();
+        if (count == nlist.length) return nlist;
+        Cons<L>[] trimmed = newList(count);
+        System.arraycopy(nlist, 0, trimmed, 0, count);
+        return trimmed;
     }
 
-    protected Reactor<L> _owner;
+    /** Returns true if {@code cons} is to be retained when removing connections to {@code
+     * listener}. Looking up a weakly held listener may discover that it has been collected, in
+     * which case the cons will have disconnected itself and is dropped as well. */
+    private static <L extends RListener> boolean retains (Cons<L> cons, L listener) {
+        return cons.listener() != listener && cons._owner != null;
+    }
+
+    /** Returns a copy of {@code list} with the supplied queue of connection changes applied, in
+     * order. This runs in time linear in the size of the list and queue (excepting removals by
+     * listener, which scan the connections added earlier in the queue). */
+    static <L extends RListener> Cons<L>[] apply (Cons<L>[] list, Reactor.PendingOp<L> ops) {
+        // note the fate of each connection touched by an op: the index in 'added' of its most
+        // recent addition, or -1 if it was most recently removed
+        Map<Cons<L>,Integer> touched = new IdentityHashMap<Cons<L>,Integer>();
+        Map<L,Boolean> removedLners = null;
+        List<Cons<L>> added = new ArrayList<Cons<L>>();
+        for (Reactor.PendingOp<L> op = ops; op != null; op = op.next) {
+            if (op.add) {
+                touched.put(op.cons, added.size());
+                added.add(op.cons);
+            } else if (op.cons != null) {
+                touched.put(op.cons, -1);
+            } else {
+                if (removedLners == null) removedLners = new IdentityHashMap<L,Boolean>();
+                removedLners.put(op.listener, true);
+                for (Cons<L> cons : added) {
+                    if (cons.listener() == op.listener) touched.put(cons, -1);
+                }
+            }
+        }
+
+        // filter the surviving additions and sort them (stably) by priority
+        List<Cons<L>> adds = new ArrayList<Cons<L>>();
+        for (int ii = 0, ll = added.size(); ii < ll; ii++) {
+            Cons<L> cons = added.get(ii);
+            if (touched.get(cons) == ii) adds.add(cons);
+        }
+        Collections.sort(adds, new Comparator<Cons<L>>() {
+            public int compare (Cons<L> c1, Cons<L> c2) {
+                return (c1._priority < c2._priority) ? -1 : (c1._priority == c2._priority ? 0 : 1);
+            }
+        });
+
+        // merge the surviving existing connections with the additions; as with insert, additions
+        // go after existing connections of equal priority
+        Cons<L>[] nlist = newList(list.length + adds.size());
+        int count = 0, aa = 0, acount = adds.size();
+        for (Cons<L> cons : list) {
+            if (touched.containsKey(cons)) continue;
+            if (removedLners != null && removedLners.containsKey(cons.listener())) continue;
+            // drop connections that were disconnected by the above, or otherwise, while we were
+            // dispatching (looking up a weakly held, collected listener disconnects it)
+            if (cons._owner == null) continue;
+            for (; aa < acount && adds.get(aa)._priority < cons._priority; aa++) {
+                nlist[count++] = adds.get(aa);
+            }
+            nlist[count++] = cons;
+        }
+        for (; aa < acount; aa++) nlist[count++] = adds.get(aa);
+
+        if (count == 0) return emptyList();
+        if (count == nlist.length) return nlist;
+        Cons<L>[] trimmed = newList(count);
+        System.arraycopy(nlist, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    private static <L extends RListener> Cons<L>[] newList (int size) {
+        @SuppressWarnings("unchecked") Cons<L>[] list = (Cons<L>[])new Cons<?>[size];
+        return list;
+    }
+
+    protected volatile Reactor<L> _owner;
     private boolean _oneShot; // defaults to false
     private int _priority; // defaults to zero
-    private ListenerRef<L> _ref;
+    private volatile Object _held; // our listener, or a WeakListener if we hold it weakly
+
+    private static final Cons<?>[] EMPTY = new Cons<?>[0];
 }
@@ -0,0 +1,42 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * A {@link Slot} specialized for doubles. When connected to a {@link DoubleSignal} (or {@link
+ * DoubleValue}), it is notified without boxing. It may also be connected to any {@code
+ * SignalView<Double>}, in which case events are unboxed before being passed to {@link
+ * #onEmit(double)}.
+ */
+public abstract class DoubleSlot extends Slot<Double>
+{
+    /**
+     * Called when a signal to which this slot is connected has emitted an event.
+     * @param event the event emitted by the signal.
+     */
+    public abstract void onEmit (double event);
+
+    /**
+     * Returns a new slot that invokes this slot and then evokes {@code after}.
+     */
+    public DoubleSlot andThen (final DoubleSlot after) {
+        final DoubleSlot before = this;
+        return new DoubleSlot() {
+            public void onEmit (double event) {
+                before.onEmit(event);
+                after.onEmit(event);
+            }
+        };
+    }
+
+    /**
+     * Unboxes the supplied event and passes it to {@link #onEmit(double)}. Boxed signals must not
+     * emit null to this slot.
+     */
+    @Override public final void onEmit (Double event) {
+        onEmit(event.doubleValue());
+    }
+}
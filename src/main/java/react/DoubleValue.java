@@ -0,0 +1,155 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * A {@link Value} specialized for doubles. The value is stored unboxed, and listeners that extend
+ * {@link DoubleValue.Listener} are notified of changes without boxing. Other listeners (and {@link
+ * #get}) see boxed values, so this may be used anywhere a {@code Value<Double>} is expected.
+ *
+ * <p>Boxed updates, and the {@link #increment} helper, pass through {@link
+ * #updateAndNotify(Object,boolean)} and {@link #emitChange(Object,Object)} as with any value. The
+ * unboxed {@link #update(double)} and {@link #updateForce(double)} bypass those hooks, and instead
+ * pass through {@link #updateAndNotifyDouble} and {@link #emitChange(double,double)}, which a
+ * subclass that intercepts changes must also override. All changes are notified via {@link
+ * #notifyChange(double,double)}.</p>
+ *
+ * <p>The current value is held in {@link #_pvalue}. The inherited {@link Value#_value} is not used,
+ * and remains null.</p>
+ */
+public class DoubleValue extends Value<Double>
+{
+    /**
+     * Used to observe changes to a double value without boxing.
+     */
+    public static abstract class Listener extends ValueView.Listener<Double> {
+        /**
+         * Called when the value to which this listener is bound has changed.
+         */
+        public abstract void onChange (double value, double oldValue);
+
+        /**
+         * Unboxes the supplied values and passes them to {@link #onChange(double,double)}. A null
+         * old value (as supplied by {@link ValueView#connectNotify}) is passed as {@code 0.0}.
+         */
+        @Override public final void onChange (Double value, Double oldValue) {
+            onChange(value.doubleValue(), (oldValue == null) ? 0.0 : oldValue.doubleValue());
+        }
+    }
+
+    /**
+     * Creates an instance with the specified starting value.
+     */
+    public DoubleValue (double value) {
+        super(null);
+        _pvalue = value;
+    }
+
+    /**
+     * Returns the current value, without boxing.
+     */
+    public double getDouble () {
+        noteRead();
+        return _pvalue;
+    }
+
+    /**
+     * Updates this instance with the supplied value. Registered listeners are notified only if the
+     * value differs from the current value.
+     * @return the previous value contained by this instance.
+     */
+    public double update (double value) {
+        return updateAndNotifyDouble(value, false);
+    }
+
+    /**
+     * Updates this instance with the supplied value. Registered listeners are notified regardless
+     * of whether the new value is equal to the old value.
+     * @return the previous value contained by this instance.
+     */
+    public double updateForce (double value) {
+        return updateAndNotifyDouble(value, true);
+    }
+
+    /**
+     * Increments this value by {@code amount}.
+     * @return the incremented value. Note that this differs from {@link #update}, which returns
+     * the previous value.
+     */
+    public double increment (double amount) {
+        double value = _pvalue + amount;
+        update(Double.valueOf(value));
+        return value;
+    }
+
+    @Override public Double get () {
+        noteRead();
+        return _pvalue;
+    }
+
+    /**
+     * Updates the value contained in this instance and notifies registered listeners if it
+     * changed, or if {@code force} is true.
+     * @return the previously contained value.
+     */
+    protected double updateAndNotifyDouble (double value, boolean force) {
+        checkMutate();
+        double ovalue = _pvalue;
+        _pvalue = value;
+        if (force || Double.doubleToLongBits(value) != Double.doubleToLongBits(ovalue)) {
+            emitChange(value, ovalue);
+        }
+        return ovalue;
+    }
+
+    /**
+     * Emits a change notification. Default implementation immediately notifies listeners, unless
+     * we have a scheduler, in which case the change is deferred (see {@link #deferChange}).
+     */
+    protected void emitChange (double value, double ovalue) {
+        if (_scheduler != null) deferChange(ovalue);
+        else notifyChange(value, ovalue);
+    }
+
+    /**
+     * Notifies our listeners of a value change.
+     */
+    protected void notifyChange (double value, double ovalue) {
+        dispatch(DOUBLE_CHANGE, null, null, null,
+                 Double.doubleToLongBits(value), Double.doubleToLongBits(ovalue));
+    }
+
+    /**
+     * Passes changes made via the boxed hooks (and deferred changes) to {@link
+     * #notifyChange(double,double)}, so that every change is notified in the same way.
+     */
+    @Override protected void notifyChange (Double value, Double ovalue) {
+        notifyChange(value.doubleValue(), ovalue.doubleValue());
+    }
+
+    @Override protected Double updateLocal (Double value) {
+        double ovalue = _pvalue;
+        _pvalue = value;
+        return ovalue;
+    }
+
+    protected double _pvalue;
+
+    protected static final Notifier DOUBLE_CHANGE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") ValueView.Listener<Double> l =
+                (ValueView.Listener<Double>)lner;
+            l.onChange((Double)a1, (Double)a2);
+        }
+        @Override public void dispatch (Object lner, Object a1, Object a2, Object a3,
+                                        long p1, long p2) {
+            double value = Double.longBitsToDouble(p1), ovalue = Double.longBitsToDouble(p2);
+            if (lner instanceof Listener) ((Listener)lner).onChange(value, ovalue);
+            else if (lner instanceof DoubleSlot) ((DoubleSlot)lner).onEmit(value);
+            else dispatch(lner, Double.valueOf(value), Double.valueOf(ovalue), null);
+        }
+    };
+}
@@ -0,0 +1,18 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * Models a two argument function.
+ */
+public interface Function2<A, B, T>
+{
+    /**
+     * Applies this function to the supplied input values. A function is generally expected to
+     * have no side effects; violate that assumption at your peril.
+     */
+    T apply (A a, B b);
+}
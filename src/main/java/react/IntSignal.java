@@ -0,0 +1,50 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * A signal that emits int events. {@link IntSlot}s connected to this signal are notified
+ * without boxing; other {@link Slot}s receive boxed events.
+ */
+public class IntSignal extends AbstractIntSignal
+{
+    /**
+     * Returns a view of the supplied boxed signal as an int signal, to which {@link IntSlot}s
+     * may connect. Events are unboxed once, as they are received from {@code source}, which must
+     * not emit null. The view will retain a connection to {@code source} for as long as it has
+     * connections of its own.
+     */
+    public static AbstractIntSignal unbox (final SignalView<Integer> source) {
+        return new Mapped() {
+            @Override protected Connection connect () {
+                return source.connect(new Slot<Integer>() {
+                    @Override public void onEmit (Integer value) {
+                        notifyEmit(value.intValue());
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Causes this signal to emit the supplied event to connected slots.
+     */
+    public void emit (int event) {
+        notifyEmit(event);
+    }
+
+    /**
+     * Returns a slot which can be used to wire this signal to the emissons of a {@link Signal} or
+     * another value.
+     */
+    public IntSlot slot () {
+        return new IntSlot () {
+            @Override public void onEmit (int value) {
+                emit(value);
+            }
+        };
+    }
+}
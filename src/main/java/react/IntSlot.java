@@ -0,0 +1,42 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * A {@link Slot} specialized for ints. When connected to an {@link IntSignal} (or {@link
+ * IntValue}), it is notified without boxing. It may also be connected to any {@code
+ * SignalView<Integer>}, in which case events are unboxed before being passed to {@link
+ * #onEmit(int)}.
+ */
+public abstract class IntSlot extends Slot<Integer>
+{
+    /**
+     * Called when a signal to which this slot is connected has emitted an event.
+     * @param event the event emitted by the signal.
+     */
+    public abstract void onEmit (int event);
+
+    /**
+     * Returns a new slot that invokes this slot and then evokes {@code after}.
+     */
+    public IntSlot andThen (final IntSlot after) {
+        final IntSlot before = this;
+        return new IntSlot() {
+            public void onEmit (int event) {
+                before.onEmit(event);
+                after.onEmit(event);
+            }
+        };
+    }
+
+    /**
+     * Unboxes the supplied event and passes it to {@link #onEmit(int)}. Boxed signals must not
+     * emit null to this slot.
+     */
+    @Override public final void onEmit (Integer event) {
+        onEmit(event.intValue());
+    }
+}
@@ -6,16 +6,72 @@
 package react;
 
 /**
- * A {@link Value} specialized for ints, which has some useful methods. Note: this specialization
- * does not mean "avoids auto-boxing", it just means "adds useful methods".
+ * A {@link Value} specialized for ints. The value is stored unboxed, and listeners that extend
+ * {@link IntValue.Listener} are notified of changes without boxing. Other listeners (and {@link
+ * #get}) see boxed values, so this may be used anywhere a {@code Value<Integer>} is expected.
+ *
+ * <p>Boxed updates, and the {@link #increment} and clamping helpers, pass through {@link
+ * #updateAndNotify(Object,boolean)} and {@link #emitChange(Object,Object)} as with any value. The
+ * unboxed {@link #update(int)} and {@link #updateForce(int)} bypass those hooks, and instead pass
+ * through {@link #updateAndNotifyInt} and {@link #emitChange(int,int)}, which a subclass that
+ * intercepts changes must also override. All changes are notified via {@link
+ * #notifyChange(int,int)}.</p>
+ *
+ * <p>The current value is held in {@link #_pvalue}. The inherited {@link Value#_value} is not used,
+ * and remains null.</p>
  */
 public class IntValue extends Value<Integer>
 {
+    /**
+     * Used to observe changes to an int value without boxing.
+     */
+    public static abstract class Listener extends ValueView.Listener<Integer> {
+        /**
+         * Called when the value to which this listener is bound has changed.
+         */
+        public abstract void onChange (int value, int oldValue);
+
+        /**
+         * Unboxes the supplied values and passes them to {@link #onChange(int,int)}. A null
+         * old value (as supplied by {@link ValueView#connectNotify}) is passed as {@code 0}.
+         */
+        @Override public final void onChange (Integer value, Integer oldValue) {
+            onChange(value.intValue(), (oldValue == null) ? 0 : oldValue.intValue());
+        }
+    }
+
     /**
      * Creates an instance with the specified starting value.
      */
     public IntValue (int value) {
-        super(value);
+        super(null);
+        _pvalue = value;
+    }
+
+    /**
+     * Returns the current value, without boxing.
+     */
+    public int getInt () {
+        noteRead();
+        return _pvalue;
+    }
+
+    /**
+     * Updates this instance with the supplied value. Registered listeners are notified only if the
+     * value differs from the current value.
+     * @return the previous value contained by this instance.
+     */
+    public int update (int value) {
+        return updateAndNotifyInt(value, false);
+    }
+
+    /**
+     * Updates this instance with the supplied value. Registered listeners are notified regardless
+     * of whether the new value is equal to the old value.
+     * @return the previous value contained by this instance.
+     */
+    public int updateForce (int value) {
+        return updateAndNotifyInt(value, true);
     }
 
     /**
@@ -24,7 +80,7 @@ public class IntValue extends Value<Integer>
      * the previous value.
      */
     public int increment (int amount) {
-        return updateInt(get() + amount);
+        return updateInt(_pvalue + amount);
     }
 
     /**
@@ -34,7 +90,7 @@ public class IntValue extends Value<Integer>
      * which returns the previous value.
      */
     public int incrementClamp (int amount, int max) {
-        return updateInt(Math.min(get() + amount, max));
+        return updateInt(Math.min(_pvalue + amount, max));
     }
 
     /**
@@ -44,7 +100,7 @@ public class IntValue extends Value<Integer>
      * which returns the previous value.
      */
     public int incrementClamp (int amount, int min, int max) {
-        return updateInt(Math.max(min, Math.min(get() + amount, max)));
+        return updateInt(Math.max(min, Math.min(_pvalue + amount, max)));
     }
 
     /**
@@ -54,11 +110,77 @@ public class IntValue extends Value<Integer>
      * which returns the previous value.
      */
     public int decrementClamp (int amount, int min) {
-        return updateInt(Math.max(get() - amount, min));
+        return updateInt(Math.max(_pvalue - amount, min));
+    }
+
+    @Override public Integer get () {
+        noteRead();
+        return _pvalue;
+    }
+
+    /**
+     * Updates the value contained in this instance and notifies registered listeners if it
+     * changed, or if {@code force} is true.
+     * @return the previously contained value.
+     */
+    protected int updateAndNotifyInt (int value, boolean force) {
+        checkMutate();
+        int ovalue = _pvalue;
+        _pvalue = value;
+        if (force || value != ovalue) {
+            emitChange(value, ovalue);
+        }
+        return ovalue;
+    }
+
+    /**
+     * Emits a change notification. Default implementation immediately notifies listeners, unless
+     * we have a scheduler, in which case the change is deferred (see {@link #deferChange}).
+     */
+    protected void emitChange (int value, int ovalue) {
+        if (_scheduler != null) deferChange(ovalue);
+        else notifyChange(value, ovalue);
+    }
+
+    /**
+     * Notifies our listeners of a value change.
+     */
+    protected void notifyChange (int value, int ovalue) {
+        dispatch(INT_CHANGE, null, null, null, value, ovalue);
+    }
+
+    /**
+     * Passes changes made via the boxed hooks (and deferred changes) to {@link
+     * #notifyChange(int,int)}, so that every change is notified in the same way.
+     */
+    @Override protected void notifyChange (Integer value, Integer ovalue) {
+        notifyChange(value.intValue(), ovalue.intValue());
+    }
+
+    @Override protected Integer updateLocal (Integer value) {
+        int ovalue = _pvalue;
+        _pvalue = value;
+        return ovalue;
     }
 
     protected int updateInt (int value) {
-        update(value);
+        update(Integer.valueOf(value));
         return value;
     }
+
+    protected int _pvalue;
+
+    protected static final Notifier INT_CHANGE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") ValueView.Listener<Integer> l =
+                (ValueView.Listener<Integer>)lner;
+            l.onChange((Integer)a1, (Integer)a2);
+        }
+        @Override public void dispatch (Object lner, Object a1, Object a2, Object a3,
+                                        long p1, long p2) {
+            if (lner instanceof Listener) ((Listener)lner).onChange((int)p1, (int)p2);
+            else if (lner instanceof IntSlot) ((IntSlot)lner).onEmit((int)p1);
+            else dispatch(lner, Integer.valueOf((int)p1), Integer.valueOf((int)p2), null);
+        }
+    };
 }
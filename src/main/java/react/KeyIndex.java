@@ -0,0 +1,127 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plumbing that allows a reactive collection to route changes to a key (or element) directly to the
+ * views that model that key, so that the cost of a change does not depend on the number of views.
+ * A view adds itself to the index when it gains its first connection and removes itself when it
+ * loses its last. The index maintains a single routing connection to its collection, which is
+ * established when the first view is added and cleared when the last view is removed.
+ *
+ * <p>Like the collections that use it, the index is not thread safe.</p>
+ */
+abstract class KeyIndex
+{
+    /** A value that models some aspect of a single key, and is notified of changes to that key by
+     * its index. */
+    static abstract class View<T> extends MappedValue<T> {
+        protected View (KeyIndex index, Object key) {
+            _index = index;
+            _key = key;
+        }
+
+        /**
+         * Called when the key modeled by this view has changed.
+         * @param present whether the key is now present in the collection.
+         * @param value the value now mapped to the key, if applicable.
+         * @param ovalue the value previously mapped to the key, if applicable.
+         */
+        protected abstract void onKeyChange (boolean present, Object value, Object ovalue);
+
+        @Override protected Connection connect () {
+            _index.add(this);
+            return new Connection() {
+                public void disconnect () {
+                    _index.remove(View.this);
+                }
+                public Connection once () {
+                    return this; // noop
+                }
+                public Connection atPriority (int priority) {
+                    return this; // noop
+                }
+                public Connection holdWeakly () {
+                    return this; // noop
+                }
+            };
+        }
+
+        protected final KeyIndex _index;
+        protected final Object _key;
+
+        /** The next view registered for our key, if any. */
+        protected View<?> _next;
+    }
+
+    /**
+     * Returns a view of exactly class {@code kind} registered for {@code key}, or null. This
+     * allows views to be shared while they are connected.
+     */
+    public View<?> find (Object key, Class<?> kind) {
+        for (View<?> view = _views.get(key); view != null; view = view._next) {
+            if (view.getClass() == kind) return view;
+        }
+        return null;
+    }
+
+    /**
+     * Notifies all views registered for {@code key} of a change. See {@link View#onKeyChange}.
+     */
+    public void route (Object key, boolean present, Object value, Object ovalue) {
+        View<?> view = _views.get(key);
+        while (view != null) {
+            // note the next view before notifying, in case this view is disconnected as a result
+            View<?> next = view._next;
+            view.onKeyChange(present, value, ovalue);
+            view = next;
+        }
+    }
+
+    /** Returns the number of keys for which views are registered. */
+    public int size () {
+        return _views.size();
+    }
+
+    /**
+     * Establishes the connection via which the collection reports changes to {@link #route}.
+     */
+    protected abstract Connection connectRouter ();
+
+    protected void add (View<?> view) {
+        view._next = _views.put(view._key, view);
+        if (_router == null) _router = connectRouter();
+    }
+
+    protected void remove (View<?> view) {
+        View<?> head = _views.get(view._key);
+        if (head == view) {
+            if (view._next == null) _views.remove(view._key);
+            else _views.put(view._key, view._next);
+        } else {
+            for (View<?> prev = head; prev != null; prev = prev._next) {
+                if (prev._next == view) {
+                    prev._next = view._next;
+                    break;
+                }
+            }
+        }
+        view._next = null;
+        if (_views.isEmpty() && _router != null) {
+            _router.disconnect();
+            _router = null;
+        }
+    }
+
+    /** The views registered for each key, chained via {@link View#_next}. */
+    protected final Map<Object,View<?>> _views = new HashMap<Object,View<?>>();
+
+    /** Our connection to our collection, while we have views. */
+    protected Connection _router;
+}
@@ -0,0 +1,50 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * A signal that emits long events. {@link LongSlot}s connected to this signal are notified
+ * without boxing; other {@link Slot}s receive boxed events.
+ */
+public class LongSignal extends AbstractLongSignal
+{
+    /**
+     * Returns a view of the supplied boxed signal as a long signal, to which {@link LongSlot}s
+     * may connect. Events are unboxed once, as they are received from {@code source}, which must
+     * not emit null. The view will retain a connection to {@code source} for as long as it has
+     * connections of its own.
+     */
+    public static AbstractLongSignal unbox (final SignalView<Long> source) {
+        return new Mapped() {
+            @Override protected Connection connect () {
+                return source.connect(new Slot<Long>() {
+                    @Override public void onEmit (Long value) {
+                        notifyEmit(value.longValue());
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Causes this signal to emit the supplied event to connected slots.
+     */
+    public void emit (long event) {
+        notifyEmit(event);
+    }
+
+    /**
+     * Returns a slot which can be used to wire this signal to the emissons of a {@link Signal} or
+     * another value.
+     */
+    public LongSlot slot () {
+        return new LongSlot () {
+            @Override public void onEmit (long value) {
+                emit(value);
+            }
+        };
+    }
+}
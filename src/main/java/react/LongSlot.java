@@ -0,0 +1,42 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * A {@link Slot} specialized for longs. When connected to a {@link LongSignal} (or {@link
+ * LongValue}), it is notified without boxing. It may also be connected to any {@code
+ * SignalView<Long>}, in which case events are unboxed before being passed to {@link
+ * #onEmit(long)}.
+ */
+public abstract class LongSlot extends Slot<Long>
+{
+    /**
+     * Called when a signal to which this slot is connected has emitted an event.
+     * @param event the event emitted by the signal.
+     */
+    public abstract void onEmit (long event);
+
+    /**
+     * Returns a new slot that invokes this slot and then evokes {@code after}.
+     */
+    public LongSlot andThen (final LongSlot after) {
+        final LongSlot before = this;
+        return new LongSlot() {
+            public void onEmit (long event) {
+                before.onEmit(event);
+                after.onEmit(event);
+            }
+        };
+    }
+
+    /**
+     * Unboxes the supplied event and passes it to {@link #onEmit(long)}. Boxed signals must not
+     * emit null to this slot.
+     */
+    @Override public final void onEmit (Long event) {
+        onEmit(event.longValue());
+    }
+}
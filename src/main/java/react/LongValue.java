@@ -0,0 +1,153 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * A {@link Value} specialized for longs. The value is stored unboxed, and listeners that extend
+ * {@link LongValue.Listener} are notified of changes without boxing. Other listeners (and {@link
+ * #get}) see boxed values, so this may be used anywhere a {@code Value<Long>} is expected.
+ *
+ * <p>Boxed updates, and the {@link #increment} helper, pass through {@link
+ * #updateAndNotify(Object,boolean)} and {@link #emitChange(Object,Object)} as with any value. The
+ * unboxed {@link #update(long)} and {@link #updateForce(long)} bypass those hooks, and instead pass
+ * through {@link #updateAndNotifyLong} and {@link #emitChange(long,long)}, which a subclass that
+ * intercepts changes must also override. All changes are notified via {@link
+ * #notifyChange(long,long)}.</p>
+ *
+ * <p>The current value is held in {@link #_pvalue}. The inherited {@link Value#_value} is not used,
+ * and remains null.</p>
+ */
+public class LongValue extends Value<Long>
+{
+    /**
+     * Used to observe changes to a long value without boxing.
+     */
+    public static abstract class Listener extends ValueView.Listener<Long> {
+        /**
+         * Called when the value to which this listener is bound has changed.
+         */
+        public abstract void onChange (long value, long oldValue);
+
+        /**
+         * Unboxes the supplied values and passes them to {@link #onChange(long,long)}. A null
+         * old value (as supplied by {@link ValueView#connectNotify}) is passed as {@code 0L}.
+         */
+        @Override public final void onChange (Long value, Long oldValue) {
+            onChange(value.longValue(), (oldValue == null) ? 0L : oldValue.longValue());
+        }
+    }
+
+    /**
+     * Creates an instance with the specified starting value.
+     */
+    public LongValue (long value) {
+        super(null);
+        _pvalue = value;
+    }
+
+    /**
+     * Returns the current value, without boxing.
+     */
+    public long getLong () {
+        noteRead();
+        return _pvalue;
+    }
+
+    /**
+     * Updates this instance with the supplied value. Registered listeners are notified only if the
+     * value differs from the current value.
+     * @return the previous value contained by this instance.
+     */
+    public long update (long value) {
+        return updateAndNotifyLong(value, false);
+    }
+
+    /**
+     * Updates this instance with the supplied value. Registered listeners are notified regardless
+     * of whether the new value is equal to the old value.
+     * @return the previous value contained by this instance.
+     */
+    public long updateForce (long value) {
+        return updateAndNotifyLong(value, true);
+    }
+
+    /**
+     * Increments this value by {@code amount}.
+     * @return the incremented value. Note that this differs from {@link #update}, which returns
+     * the previous value.
+     */
+    public long increment (long amount) {
+        long value = _pvalue + amount;
+        update(Long.valueOf(value));
+        return value;
+    }
+
+    @Override public Long get () {
+        noteRead();
+        return _pvalue;
+    }
+
+    /**
+     * Updates the value contained in this instance and notifies registered listeners if it
+     * changed, or if {@code force} is true.
+     * @return the previously contained value.
+     */
+    protected long updateAndNotifyLong (long value, boolean force) {
+        checkMutate();
+        long ovalue = _pvalue;
+        _pvalue = value;
+        if (force || value != ovalue) {
+            emitChange(value, ovalue);
+        }
+        return ovalue;
+    }
+
+    /**
+     * Emits a change notification. Default implementation immediately notifies listeners, unless
+     * we have a scheduler, in which case the change is deferred (see {@link #deferChange}).
+     */
+    protected void emitChange (long value, long ovalue) {
+        if (_scheduler != null) deferChange(ovalue);
+        else notifyChange(value, ovalue);
+    }
+
+    /**
+     * Notifies our listeners of a value change.
+     */
+    protected void notifyChange (long value, long ovalue) {
+        dispatch(LONG_CHANGE, null, null, null, value, ovalue);
+    }
+
+    /**
+     * Passes changes made via the boxed hooks (and deferred changes) to {@link
+     * #notifyChange(long,long)}, so that every change is notified in the same way.
+     */
+    @Override protected void notifyChange (Long value, Long ovalue) {
+        notifyChange(value.longValue(), ovalue.longValue());
+    }
+
+    @Override protected Long updateLocal (Long value) {
+        long ovalue = _pvalue;
+        _pvalue = value;
+        return ovalue;
+    }
+
+    protected long _pvalue;
+
+    protected static final Notifier LONG_CHANGE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") ValueView.Listener<Long> l =
+                (ValueView.Listener<Long>)lner;
+            l.onChange((Long)a1, (Long)a2);
+        }
+        @Override public void dispatch (Object lner, Object a1, Object a2, Object a3,
+                                        long p1, long p2) {
+            if (lner instanceof Listener) ((Listener)lner).onChange(p1, p2);
+            else if (lner instanceof LongSlot) ((LongSlot)lner).onEmit(p1);
+            else dispatch(lner, Long.valueOf(p1), Long.valueOf(p2), null);
+        }
+    };
+}
@@ -10,9 +10,49 @@ package react;
  * their underlying value. When the mapped value adds its first connection, it establishes a
  * connection to the underlying value, and when it removes its last connection it clears its
  * connection from the underlying value.
+ *
+ * <p>A mapped value may also take part in ranked propagation (see {@link Propagation}): it assigns
+ * itself a rank in {@link #connect}, and when a source changes it either calls {@link #forward}
+ * before notifying (if it has a single source), or calls {@link #sourceChanged} and notifies in
+ * {@link #propagate} (if it has multiple sources).</p>
  */
 abstract class MappedValue<T> extends AbstractValue<T>
 {
+    /**
+     * A listener via which a ranked value observes one of its sources. Allows a source whose rank
+     * rises to raise the ranks of the values derived from it (see {@link #raiseRank}).
+     */
+    protected abstract class SourceListener<S> extends ValueView.Listener<S> {
+        /** Returns the value that is observing the source. */
+        MappedValue<?> dependent () {
+            return MappedValue.this;
+        }
+    }
+
+    /**
+     * Returns the rank of {@code source}, for use in computing the rank of a value derived from
+     * it: the rank of a mapped value, or zero for any other source.
+     */
+    protected static int rankOf (Object source) {
+        return (source instanceof MappedValue<?>) ? ((MappedValue<?>)source)._rank : 0;
+    }
+
+    /**
+     * Raises our rank to {@code rank}, if it is higher, and the ranks of the values derived from
+     * us accordingly, so that they continue to be recomputed after us. A value whose sources
+     * change (see {@link Computed}) calls this when the highest ranked of them rises.
+     */
+    protected void raiseRank (int rank) {
+        if (rank <= _rank) return;
+        _rank = rank;
+        for (Cons<?> cons : _listeners) {
+            Object lner = cons.listener();
+            if (lner instanceof MappedValue<?>.SourceListener<?>) {
+                ((MappedValue<?>.SourceListener<?>)lner).dependent().raiseRank(rank + 1);
+            }
+        }
+    }
+
     /**
      * Establishes a connection to our source value. Called when go from zero to one listeners.
      * When we go from one to zero listeners, the connection will automatically be cleared.
@@ -21,6 +61,49 @@ abstract class MappedValue<T> extends AbstractValue<T>
      */
     protected abstract Connection connect ();
 
+    /**
+     * Returns the propagation in which changes notified by {@code source} are delivered, creating
+     * it if needed, or null if {@code source} dispatches concurrently (and so cannot share a
+     * propagation between notifications).
+     */
+    protected static Propagation propagationOf (Reactor<?> source) {
+        Propagation prop = source._propagation;
+        if (prop == null && source._mode != DispatchMode.CONCURRENT) {
+            source._propagation = prop = new Propagation(source);
+        }
+        return prop;
+    }
+
+    /**
+     * Notes that our (single) source, {@code source}, has notified a change, which we will notify
+     * in turn, so that values derived from this one are recomputed as part of the same
+     * propagation.
+     */
+    protected void forward (Reactor<?> source) {
+        Propagation prop = propagationOf(source);
+        if (_propagation != prop) _propagation = prop;
+    }
+
+    /**
+     * Notes that {@code source}, one of our multiple sources, has notified a change, and queues
+     * this value to be {@link #propagate}d once all values ranked below it have been. If {@code
+     * source} is not a reactor, or dispatches concurrently, we propagate immediately.
+     */
+    protected void sourceChanged (Object source) {
+        Propagation prop = (source instanceof Reactor<?>) ?
+            propagationOf((Reactor<?>)source) : null;
+        if (prop == null) propagate();
+        else prop.enqueue(this);
+    }
+
+    /**
+     * Recomputes this value following one or more calls to {@link #sourceChanged}, and notifies
+     * our listeners if appropriate. The default implementation does nothing.
+     */
+    protected void propagate () {
+        // noop
+    }
+
     @Override
     protected void connectionAdded () {
         super.connectionAdded();
@@ -37,4 +120,13 @@ abstract class MappedValue<T> extends AbstractValue<T>
     }
 
     protected Connection _conn;
+
+    /** One more than the highest rank of our sources, if we use ranked propagation. */
+    protected int _rank;
+
+    /** Whether we are queued in a propagation. */
+    protected boolean _queued;
+
+    /** The next value queued at our rank. */
+    protected MappedValue<?> _nextQueued;
 }
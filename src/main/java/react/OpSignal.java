@@ -0,0 +1,353 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plumbing to implement signal operators (see {@link AbstractSignal#filter}, etc.) such that a
+ * chain of operators is fused into a single signal. Applying an operator to an operator signal
+ * whose operators are all stateless (see {@link Op#isStateless}) yields a signal that connects
+ * directly to the original source, and passes each event through the stages of the whole chain,
+ * so no intermediate signals are created, connected or notified. Operators applied to a signal
+ * that includes a stateful operator are not fused with it; the resulting signal connects to it,
+ * so that every signal derived from, say, a {@link AbstractSignal#scan} sees the same
+ * accumulation, rather than each running its own. Thus a stateless function may be applied once
+ * per derived signal, rather than once per event, and should be free of side effects.
+ *
+ * <p>Like {@link MappedSignal}, an operator signal connects to its source when it gains its first
+ * connection, and disconnects when it loses its last. The stages of its chain are created anew each
+ * time it connects, so operators that retain state (such as {@link AbstractSignal#scan}) start
+ * afresh, and any events they hold (such as those buffered by {@link AbstractSignal#buffer(int)})
+ * are discarded when it disconnects.</p>
+ */
+class OpSignal<T> extends MappedSignal<T>
+{
+    /** Describes an operator, from which a stage is created for each connection to the source. */
+    static abstract class Op {
+        /** Creates a stage that processes events and passes its results to {@code next}. */
+        public abstract Stage stage (Stage next);
+
+        /** Returns true if this operator's stages retain no state between events, in which case
+         * operators may be fused after it. */
+        public boolean isStateless () {
+            return false;
+        }
+
+        public static Op map (final Function<?,?> func) {
+            @SuppressWarnings("unchecked") final Function<Object,?> f = (Function<Object,?>)func;
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new Stage(next) {
+                        @Override public void accept (Object event) {
+                            _next.accept(f.apply(event));
+                        }
+                    };
+                }
+                @Override public boolean isStateless () {
+                    return true;
+                }
+            };
+        }
+
+        public static Op filter (final Function<?,Boolean> pred) {
+            @SuppressWarnings("unchecked") final Function<Object,Boolean> p =
+                (Function<Object,Boolean>)pred;
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new Stage(next) {
+                        @Override public void accept (Object event) {
+                            if (Boolean.TRUE.equals(p.apply(event))) _next.accept(event);
+                        }
+                    };
+                }
+                @Override public boolean isStateless () {
+                    return true;
+                }
+            };
+        }
+
+        public static Op collect (final Function<?,?> func) {
+            @SuppressWarnings("unchecked") final Function<Object,?> f = (Function<Object,?>)func;
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new Stage(next) {
+                        @Override public void accept (Object event) {
+                            Object result = f.apply(event);
+                            if (result != null) _next.accept(result);
+                        }
+                    };
+                }
+                @Override public boolean isStateless () {
+                    return true;
+                }
+            };
+        }
+
+        public static Op distinct () {
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new Stage(next) {
+                        @Override public void accept (Object event) {
+                            if (_seen && Reactor.areEqual(event, _last)) return;
+                            _seen = true;
+                            _last = event;
+                            _next.accept(event);
+                        }
+                        protected boolean _seen;
+                        protected Object _last;
+                    };
+                }
+            };
+        }
+
+        public static Op scan (final Object seed, final Function2<?,?,?> func) {
+            @SuppressWarnings("unchecked") final Function2<Object,Object,?> f =
+                (Function2<Object,Object,?>)func;
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new Stage(next) {
+                        @Override public void accept (Object event) {
+                            _next.accept(_acc = f.apply(_acc, event));
+                        }
+                        protected Object _acc = seed;
+                    };
+                }
+            };
+        }
+
+        public static Op buffer (final int count) {
+            if (count < 1) throw new IllegalArgumentException("Count must be positive");
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new Stage(next) {
+                        @Override public void accept (Object event) {
+                            _events.add(event);
+                            if (_events.size() < count) return;
+                            List<Object> events = _events;
+                            _events = new ArrayList<Object>(count);
+                            _next.accept(events);
+                        }
+                        protected List<Object> _events = new ArrayList<Object>(count);
+                    };
+                }
+            };
+        }
+
+        public static Op buffer (final long span, final Clock clock) {
+            if (clock == null) throw new NullPointerException("Null clock");
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new TimedStage(next, clock) {
+                        @Override public void accept (Object event) {
+                            synchronized (this) {
+                                if (_events == null) {
+                                    _events = new ArrayList<Object>();
+                                    _clock.schedule(span, this);
+                                }
+                                _events.add(event);
+                            }
+                        }
+                        public void run () {
+                            List<Object> events;
+                            synchronized (this) {
+                                if (_disposed) return;
+                                events = _events;
+                                _events = null;
+                            }
+                            _next.accept(events);
+                        }
+                        protected List<Object> _events;
+                    };
+                }
+            };
+        }
+
+        public static Op debounce (final long delay, final Clock clock) {
+            if (clock == null) throw new NullPointerException("Null clock");
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new TimedStage(next, clock) {
+                        @Override public void accept (Object event) {
+                            synchronized (this) {
+                                _latest = event;
+                                _deadline = _clock.now() + delay;
+                                if (_scheduled) return; // our pending action will reschedule itself
+                                _scheduled = true;
+                            }
+                            _clock.schedule(delay, this);
+                        }
+                        public void run () {
+                            Object event;
+                            synchronized (this) {
+                                if (_disposed) return;
+                                long remain = _deadline - _clock.now();
+                                if (remain > 0) {
+                                    _clock.schedule(remain, this);
+                                    return;
+                                }
+                                event = _latest;
+                                _latest = null;
+                                _scheduled = false;
+                            }
+                            _next.accept(event);
+                        }
+                        protected Object _latest;
+                        protected long _deadline;
+                        protected boolean _scheduled;
+                    };
+                }
+            };
+        }
+
+        public static Op throttle (final long interval, final Clock clock) {
+            if (clock == null) throw new NullPointerException("Null clock");
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new Stage(next) {
+                        @Override public void accept (Object event) {
+                            synchronized (this) {
+                                long now = clock.now();
+                                if (_emitted && now - _lastEmit < interval) return;
+                                _emitted = true;
+                                _lastEmit = now;
+                            }
+                            _next.accept(event);
+                        }
+                        protected boolean _emitted;
+                        protected long _lastEmit;
+                    };
+                }
+            };
+        }
+
+        public static Op sample (final long interval, final Clock clock) {
+            if (clock == null) throw new NullPointerException("Null clock");
+            return new Op() {
+                public Stage stage (Stage next) {
+                    return new TimedStage(next, clock) {
+                        @Override public void accept (Object event) {
+                            synchronized (this) {
+                                _latest = event;
+                                if (_scheduled) return;
+                                _scheduled = true;
+                            }
+                            _clock.schedule(interval, this);
+                        }
+                        public void run () {
+                            Object event;
+                            synchronized (this) {
+                                if (_disposed) return;
+                                event = _latest;
+                                _latest = null;
+                                _scheduled = false;
+                            }
+                            _next.accept(event);
+                        }
+                        protected Object _latest;
+                        protected boolean _scheduled;
+                    };
+                }
+            };
+        }
+    }
+
+    /** Processes the events of a single connection to the source. */
+    static abstract class Stage {
+        public Stage (Stage next) {
+            _next = next;
+        }
+
+        /** Processes an event emitted by the previous stage (or the source). */
+        public abstract void accept (Object event);
+
+        /** Releases any resources held by this and subsequent stages. Called on disconnect. */
+        public void dispose () {
+            if (_next != null) _next.dispose();
+        }
+
+        protected final Stage _next;
+    }
+
+    /** A stage whose scheduled actions are run by a {@link Clock}, perhaps on another thread, so
+     * its state is only accessed while holding its lock. */
+    static abstract class TimedStage extends Stage implements Runnable {
+        public TimedStage (Stage next, Clock clock) {
+            super(next);
+            _clock = clock;
+        }
+
+        @Override public void dispose () {
+            synchronized (this) {
+                _disposed = true;
+            }
+            super.dispose();
+        }
+
+        protected final Clock _clock;
+        protected boolean _disposed;
+    }
+
+    public OpSignal (SignalView<?> source, Op[] ops) {
+        _source = source;
+        _ops = ops;
+        boolean stateless = true;
+        for (Op op : ops) stateless &= op.isStateless();
+        _stateless = stateless;
+    }
+
+    @Override <M> AbstractSignal<M> fuse (Op op) {
+        // our stateful stages must be shared by every signal derived from us, so build on top
+        if (!_stateless) return super.fuse(op);
+        Op[] ops = new Op[_ops.length+1];
+        System.arraycopy(_ops, 0, ops, 0, _ops.length);
+        ops[_ops.length] = op;
+        return new OpSignal<M>(_source, ops);
+    }
+
+    @Override protected Connection connect () {
+        Stage head = new Stage(null) {
+            @Override public void accept (Object event) {
+                @SuppressWarnings("unchecked") T cevent = (T)event;
+                notifyEmit(cevent);
+            }
+        };
+        for (int ii = _ops.length-1; ii >= 0; ii--) head = _ops[ii].stage(head);
+        final Stage stages = head;
+        @SuppressWarnings("unchecked") SignalView<Object> source = (SignalView<Object>)_source;
+        final Connection conn = source.connect(new Slot<Object>() {
+            @Override public void onEmit (Object event) {
+                stages.accept(event);
+            }
+        });
+        return new Connection() {
+            public void disconnect () {
+                conn.disconnect();
+                stages.dispose();
+            }
+            public Connection once () {
+                return this; // noop
+            }
+            public Connection atPriority (int priority) {
+                return this; // noop
+            }
+            public Connection holdWeakly () {
+                return this; // noop
+            }
+        };
+    }
+
+    /** The signal whose events are processed by our operators. */
+    protected final SignalView<?> _source;
+
+    /** Our operators, in the order in which they process events. */
+    protected final Op[] _ops;
+
+    /** Whether all of our operators are stateless, and may thus be fused with those applied to
+     * us. */
+    protected final boolean _stateless;
+}
@@ -0,0 +1,85 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import react.Reactor.RListener;
+
+/**
+ * Isolates the bits of threading machinery used by {@link Reactor} (and {@link Computed}) that are
+ * not available (nor needed) in GWT, which super-sources a single-threaded version of this class.
+ */
+class Platform
+{
+    /**
+     * Replaces {@code reactor}'s listener list with {@code update} iff it is currently {@code
+     * expect}.
+     * @return true if the list was replaced, false if it was changed by another thread first.
+     */
+    static <L extends RListener> boolean compareAndSetListeners (
+        Reactor<L> reactor, Cons<L>[] expect, Cons<L>[] update) {
+        return LISTENERS.compareAndSet(reactor, expect, update);
+    }
+
+    /**
+     * Clears {@code cons}'s owner, atomically, so that only one of any threads that disconnect
+     * {@code cons} concurrently obtains it.
+     * @return the owner, or null if {@code cons} was already cleared.
+     */
+    static <L extends RListener> Reactor<L> clearOwner (Cons<L> cons) {
+        @SuppressWarnings("unchecked") Reactor<L> owner = (Reactor<L>)OWNER.getAndSet(cons, null);
+        return owner;
+    }
+
+    /**
+     * Returns a token that identifies the calling thread.
+     */
+    static Object currentThread () {
+        return Thread.currentThread();
+    }
+
+    /**
+     * Returns the computed value being evaluated on the calling thread, if any.
+     */
+    static Computed<?> evaluating () {
+        return EVALUATING.get();
+    }
+
+    /**
+     * Notes the computed value being evaluated on the calling thread, or null.
+     */
+    static void setEvaluating (Computed<?> computed) {
+        EVALUATING.set(computed);
+    }
+
+    /**
+     * Returns true if any computed value is being evaluated, on any thread. This allows reads to
+     * skip dependency tracking when none are.
+     */
+    static boolean anyEvaluating () {
+        return EVALUATIONS.get() > 0;
+    }
+
+    /**
+     * Adjusts the number of computed values being evaluated, on any thread, by {@code delta}.
+     */
+    static void addEvaluations (int delta) {
+        EVALUATIONS.addAndGet(delta);
+    }
+
+    private static final ThreadLocal<Computed<?>> EVALUATING = new ThreadLocal<Computed<?>>();
+    private static final AtomicInteger EVALUATIONS = new AtomicInteger();
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Reactor,Cons[]> LISTENERS =
+        AtomicReferenceFieldUpdater.newUpdater(Reactor.class, Cons[].class, "_listeners");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Cons,Reactor> OWNER =
+        AtomicReferenceFieldUpdater.newUpdater(Cons.class, Reactor.class, "_owner");
+}
@@ -0,0 +1,122 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * Plumbing that delivers a change to the values derived from it in rank order. A derived value is
+ * ranked one higher than the highest ranked of its sources (plain values have rank zero), so by
+ * the time a derived value is recomputed, all of its sources have been recomputed. Thus a value
+ * derived (directly or indirectly) from two values that depend on the same source is recomputed
+ * once per change to that source, and never observes one of those values updated and the other
+ * not.
+ *
+ * <p>Each propagation belongs to a root reactor (a plain value, for example), which drains it once
+ * it has notified its listeners. A derived value with multiple sources queues itself in the
+ * propagation of the source that notified it. A derived value with a single source cannot observe
+ * an inconsistency, so it recomputes and notifies immediately, as part of the propagation of its
+ * source; likewise a value being recomputed by a propagation notifies as part of it.</p>
+ */
+final class Propagation
+{
+    /** The reactor whose changes this propagation delivers, and which drains it. */
+    public final Reactor<?> root;
+
+    public Propagation (Reactor<?> root) {
+        this.root = root;
+    }
+
+    /**
+     * Queues {@code node} to be recomputed, if it is not already queued.
+     */
+    public void enqueue (MappedValue<?> node) {
+        if (node._queued) return;
+        node._queued = true;
+        int rank = node._rank;
+        if (rank >= _heads.length) {
+            int size = Math.max(rank+1, _heads.length*2);
+            MappedValue<?>[] heads = new MappedValue<?>[size], tails = new MappedValue<?>[size];
+            System.arraycopy(_heads, 0, heads, 0, _heads.length);
+            System.arraycopy(_tails, 0, tails, 0, _tails.length);
+            _heads = heads;
+            _tails = tails;
+        }
+        if (_tails[rank] == null) _heads[rank] = node;
+        else _tails[rank]._nextQueued = node;
+        _tails[rank] = node;
+        if (_count == 0 || rank < _rank) _rank = rank;
+        _count++;
+    }
+
+    /**
+     * Returns true if values are queued, and we are not already draining them.
+     */
+    public boolean pending () {
+        return _count > 0 && !_draining;
+    }
+
+    /**
+     * Recomputes the queued values, lowest rank first. Failures are handled per the failure policy
+     * of our root.
+     *
+     * @param error the failures collected thus far by our root, or null.
+     * @return the failures collected thus far, or null.
+     */
+    public MultiFailureException drain (MultiFailureException error) {
+        _draining = true;
+        try {
+            while (_count > 0) {
+                while (_heads[_rank] == null) _rank++;
+                MappedValue<?> node = _heads[_rank];
+                _heads[_rank] = node._nextQueued;
+                if (node._nextQueued == null) _tails[_rank] = null;
+                node._nextQueued = null;
+                node._queued = false;
+                _count--;
+
+                // a value whose rank was raised while it was queued is requeued at its new rank
+                if (node._rank > _rank) {
+                    enqueue(node);
+                    continue;
+                }
+
+                // values derived from this one are to be queued in this propagation
+                node._propagation = this;
+                try {
+                    node.propagate();
+                } catch (Throwable t) {
+                    error = root._failurePolicy.onFailure(root, error, t);
+                }
+            }
+        } finally {
+            _draining = false;
+            // if we were aborted by a failure, abandon the remaining queued values
+            if (_count > 0) clear();
+        }
+        return error;
+    }
+
+    protected void clear () {
+        for (int ii = 0; ii < _heads.length; ii++) {
+            for (MappedValue<?> node = _heads[ii], next; node != null; node = next) {
+                next = node._nextQueued;
+                node._nextQueued = null;
+                node._queued = false;
+            }
+            _heads[ii] = _tails[ii] = null;
+        }
+        _count = 0;
+    }
+
+    /** The first and last values queued at each rank, chained via
+     * {@link MappedValue#_nextQueued}. */
+    protected MappedValue<?>[] _heads = new MappedValue<?>[4], _tails = new MappedValue<?>[4];
+
+    /** The number of values queued, and the lowest rank at which a value may be queued. */
+    protected int _count, _rank;
+
+    /** Whether we are currently recomputing queued values. */
+    protected boolean _draining;
+}
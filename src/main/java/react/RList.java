@@ -6,10 +6,17 @@
 package react;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Provides a reactive model of a list. Note that {@link #remove} <em>will not</em> trigger a
@@ -54,6 +61,29 @@ public class RList<E> extends Reactor<RList.Listener<E>>
         public void onRemove (E elem) {
             // noop
         }
+
+        /** Notifies listener of a range of added elements, which now occupy the indices starting
+         * at {@code index}. This method will call {@link #onAdd(int,Object)} for each element,
+         * as if they were added one at a time, in order, by default. */
+        public void onAddRange (int index, List<E> elems) {
+            for (int ii = 0, ll = elems.size(); ii < ll; ii++) onAdd(index+ii, elems.get(ii));
+        }
+
+        /** Notifies listener of a range of updated elements, which occupy the indices starting at
+         * {@code index}. This method will call {@link #onSet(int,Object,Object)} for each element,
+         * in order, by default. */
+        public void onSetRange (int index, List<E> newElems, List<E> oldElems) {
+            for (int ii = 0, ll = newElems.size(); ii < ll; ii++) {
+                onSet(index+ii, newElems.get(ii), oldElems.get(ii));
+            }
+        }
+
+        /** Notifies listener of a range of removed elements, which formerly occupied the indices
+         * starting at {@code index}. This method will call {@link #onRemove(int,Object)} for each
+         * element, as if they were removed one at a time, in order, by default. */
+        public void onRemoveRange (int index, List<E> elems) {
+            for (int ii = 0, ll = elems.size(); ii < ll; ii++) onRemove(index, elems.get(ii));
+        }
     }
 
     /**
@@ -70,11 +100,45 @@ public class RList<E> extends Reactor<RList.Listener<E>>
         return new RList<E>(impl);
     }
 
+    /**
+     * Creates an indexed reactive list backed by an {@link ArrayList}. See {@link
+     * #RList(List,boolean)}.
+     */
+    public static <E> RList<E> createIndexed () {
+        return new RList<E>(new ArrayList<E>(), true);
+    }
+
     /**
      * Creates a reactive list with the supplied underlying list implementation.
      */
     public RList (List<E> impl) {
+        this(impl, false);
+    }
+
+    /**
+     * Creates a reactive list with the supplied underlying list implementation.
+     *
+     * @param indexed if true, the list maintains a hash index of the elements it contains (and
+     * their counts), which makes {@link #contains} constant time, as are {@link #indexOf}, {@link
+     * #remove(Object)} and {@link #removeForce} when the element is absent. The index is kept up to
+     * date by all mutations made through this list, so {@code impl} must not be modified directly,
+     * and {@link #subList} returns a read-only view. Elements must not change their hash code
+     * while in the list.
+     */
+    public RList (List<E> impl, boolean indexed) {
         _impl = impl;
+        if (indexed) {
+            _index = new HashMap<Object,int[]>();
+            for (E elem : impl) indexAdd(elem);
+        }
+    }
+
+    /**
+     * Returns true if this list maintains an index of its elements. See {@link
+     * #RList(List,boolean)}.
+     */
+    public boolean isIndexed () {
+        return _index != null;
     }
 
     /**
@@ -100,12 +164,106 @@ public class RList<E> extends Reactor<RList.Listener<E>>
      */
     public boolean removeForce (E elem) {
         checkMutate();
-        int index = _impl.indexOf(elem);
-        if (index >= 0) _impl.remove(index);
+        int index = indexOf(elem);
+        if (index >= 0) {
+            _impl.remove(index);
+            indexRemove(elem);
+        }
         emitRemove(index, elem);
         return (index >= 0);
     }
 
+    /**
+     * Removes the elements in the range [{@code fromIndex}, {@code toIndex}) in a single pass, and
+     * notifies listeners via {@link Listener#onRemoveRange}. Does nothing if the range is empty.
+     */
+    public void removeRange (int fromIndex, int toIndex) {
+        checkMutate();
+        List<E> range = _impl.subList(fromIndex, toIndex);
+        if (range.isEmpty()) return;
+        List<E> removed = new ArrayList<E>(range);
+        range.clear();
+        if (_index != null) {
+            if (_impl.isEmpty()) _index.clear();
+            else for (E elem : removed) indexRemove(elem);
+        }
+        emitRemoveRange(fromIndex, removed);
+    }
+
+    /**
+     * Replaces the contents of this list with {@code elements}. Listeners are notified via {@link
+     * Listener#onSetRange} of the elements that replace existing elements, then via {@link
+     * Listener#onAddRange} or {@link Listener#onRemoveRange} of the elements added to or removed
+     * from the end of the list.
+     */
+    public void setAll (Collection<? extends E> elements) {
+        checkMutate();
+        List<E> nelems = new ArrayList<E>(elements);
+        int osize = _impl.size(), nsize = nelems.size(), common = Math.min(osize, nsize);
+        if (common > 0) {
+            List<E> oelems = new ArrayList<E>(_impl.subList(0, common));
+            ListIterator<E> iter = _impl.listIterator();
+            for (int ii = 0; ii < common; ii++) {
+                indexRemove(iter.next());
+                E elem = nelems.get(ii);
+                iter.set(elem);
+                indexAdd(elem);
+            }
+            emitSetRange(0, nelems.subList(0, common), oelems);
+        }
+        if (nsize > osize) {
+            List<E> added = nelems.subList(common, nsize);
+            _impl.addAll(added);
+            for (E elem : added) indexAdd(elem);
+            emitAddRange(common, added);
+        } else if (osize > nsize) {
+            removeRange(common, osize);
+        }
+    }
+
+    /**
+     * Sorts this list using {@code comp} (or the natural ordering of its elements, if {@code comp}
+     * is null). Listeners are notified via a single {@link Listener#onSetRange} spanning the
+     * elements whose positions changed, if any.
+     */
+    public void sort (Comparator<? super E> comp) {
+        checkMutate();
+        Object[] oelems = _impl.toArray();
+        @SuppressWarnings("unchecked") E[] nelems = (E[])_impl.toArray();
+        Arrays.sort(nelems, comp);
+        int from = 0, to = nelems.length;
+        while (from < to && nelems[from] == oelems[from]) from++;
+        while (to > from && nelems[to-1] == oelems[to-1]) to--;
+        if (from == to) return;
+        ListIterator<E> iter = _impl.listIterator(from);
+        for (int ii = from; ii < to; ii++) {
+            iter.next();
+            iter.set(nelems[ii]);
+        }
+        @SuppressWarnings("unchecked") List<E> olist = (List<E>)Arrays.asList(oelems);
+        emitSetRange(from, Arrays.asList(nelems).subList(from, to), olist.subList(from, to));
+    }
+
+    /**
+     * Configures this list to defer its notifications to {@code scheduler}: changes are recorded
+     * rather than dispatched, and delivered in the order in which they were made when the
+     * scheduler is flushed. Successive updates to the same index (uninterrupted by additions or
+     * removals) are delivered as a single update, from the first old element to the last new
+     * element, and not at all if those are equal. Passing null restores immediate notification
+     * (changes already recorded are still delivered by the flush).
+     * @see ReactScheduler
+     */
+    public void setScheduler (ReactScheduler scheduler) {
+        _scheduler = scheduler;
+    }
+
+    /**
+     * Returns the scheduler to which this list's notifications are deferred, or null.
+     */
+    public ReactScheduler scheduler () {
+        return _scheduler;
+    }
+
     /**
      * Exposes the size of this list as a value.
      */
@@ -120,6 +278,12 @@ public class RList<E> extends Reactor<RList.Listener<E>>
                 @Override public void onRemove (int index, E elem) {
                     _sizeView.update(size());
                 }
+                @Override public void onAddRange (int index, List<E> elems) {
+                    _sizeView.update(size());
+                }
+                @Override public void onRemoveRange (int index, List<E> elems) {
+                    _sizeView.update(size());
+                }
             });
         }
         return _sizeView;
@@ -134,6 +298,7 @@ public class RList<E> extends Reactor<RList.Listener<E>>
     @Override public void add (int index, E element) {
         checkMutate();
         _impl.add(index, element);
+        indexAdd(element);
         emitAdd(index, element);
     }
 
@@ -143,11 +308,13 @@ public class RList<E> extends Reactor<RList.Listener<E>>
 
     @Override public boolean addAll (int index, Collection<? extends E> elements) {
         checkMutate();
-        // Call add instead of calling _impl.addAll so if a listener throws an exception on
-        // emission, we don't have elements added without a corresponding emission
-        for (E elem : elements) {
-            add(index++, elem);
-        }
+        // copy the elements, both to hand them to our listeners and in case we're adding to
+        // ourselves, then add them in a single pass
+        List<E> added = new ArrayList<E>(elements);
+        if (added.isEmpty()) return false;
+        _impl.addAll(index, added);
+        for (E elem : added) indexAdd(elem);
+        emitAddRange(index, added);
         return true;
     }
 
@@ -166,6 +333,7 @@ public class RList<E> extends Reactor<RList.Listener<E>>
                 checkMutate();
                 int index = iiter.nextIndex();
                 iiter.add(elem);
+                indexAdd(elem);
                 emitAdd(index, elem);
             }
             public boolean hasNext () {
@@ -190,11 +358,14 @@ public class RList<E> extends Reactor<RList.Listener<E>>
                 checkMutate();
                 int index = iiter.previousIndex();
                 iiter.remove();
+                indexRemove(_current);
                 emitRemove(index, _current);
             }
             public void set (E elem) {
                 checkMutate();
                 iiter.set(elem);
+                indexRemove(_current);
+                indexAdd(elem);
                 emitSet(iiter.previousIndex(), elem, _current);
                 _current = elem;
             }
@@ -203,27 +374,19 @@ public class RList<E> extends Reactor<RList.Listener<E>>
     }
 
     @Override public boolean retainAll (Collection<?> collection) {
-        boolean modified = false;
-        for (Iterator<E> iter = iterator(); iter.hasNext(); ) {
-            if (!collection.contains(iter.next())) {
-                iter.remove();
-                modified = true;
-            }
-        }
-        return modified;
+        return removeMatching(collection, false);
     }
 
     @Override public boolean removeAll (Collection<?> collection) {
-        boolean modified = false;
-        for (Object o : collection) modified |= remove(o);
-        return modified;
+        return removeMatching(collection, true);
     }
 
     @Override public boolean remove (Object object) {
         checkMutate();
-        int index = _impl.indexOf(object);
+        int index = indexOf(object);
         if (index < 0) return false;
         _impl.remove(index);
+        indexRemove(object);
         // the cast is safe if the element was removed
         @SuppressWarnings("unchecked") E elem = (E)object;
         emitRemove(index, elem);
@@ -233,6 +396,7 @@ public class RList<E> extends Reactor<RList.Listener<E>>
     @Override public E remove (int index) {
         checkMutate();
         E removed = _impl.remove(index);
+        indexRemove(removed);
         emitRemove(index, removed);
         return removed;
     }
@@ -240,11 +404,15 @@ public class RList<E> extends Reactor<RList.Listener<E>>
     @Override public E set (int index, E element) {
         checkMutate();
         E removed = _impl.set(index, element);
+        indexRemove(removed);
+        indexAdd(element);
         emitSet(index, element, removed);
         return removed;
     }
 
     @Override public List<E> subList (int fromIndex, int toIndex) {
+        // changes made via the sublist would not be reflected in our index
+        if (_index != null) return Collections.unmodifiableList(_impl.subList(fromIndex, toIndex));
         return new RList<E>(_impl.subList(fromIndex, toIndex));
     }
 
@@ -274,24 +442,26 @@ public class RList<E> extends Reactor<RList.Listener<E>>
     }
 
     @Override public int indexOf (Object element) {
+        if (_index != null && !_index.containsKey(element)) return -1;
         return _impl.indexOf(element);
     }
 
     @Override public int lastIndexOf (Object element) {
+        if (_index != null && !_index.containsKey(element)) return -1;
         return _impl.lastIndexOf(element);
     }
 
     @Override public boolean contains (Object object) {
-        return _impl.contains(object);
+        return (_index != null) ? _index.containsKey(object) : _impl.contains(object);
     }
 
     @Override public boolean containsAll (Collection<?> collection) {
+        if (_index != null) return _index.keySet().containsAll(collection);
         return _impl.containsAll(collection);
     }
 
     @Override public void clear () {
-        // clear in such a way as to emit events
-        while (!isEmpty()) remove(0);
+        removeRange(0, size());
     }
 
     @Override public Object[] toArray () {
@@ -308,59 +478,184 @@ public class RList<E> extends Reactor<RList.Listener<E>>
     }
 
     // Non-list RList implementation
-    protected void emitAdd (int index, E elem) {
-        Cons<Listener<E>> lners = prepareNotify();
-        MultiFailureException error = null;
-        try {
-            for (Cons<Listener<E>> cons = lners; cons != null; cons = cons.next) {
-                try {
-                    cons.listener().onAdd(index, elem);
-                } catch (Throwable t) {
-                    if (error == null) error = new MultiFailureException();
-                    error.addFailure(t);
+
+    /**
+     * Removes, in a single pass, all elements that are ({@code remove} true) or are not ({@code
+     * remove} false) contained in {@code collection}. Each run of adjacent removed elements is
+     * reported via {@link Listener#onRemoveRange}, at its index as if the elements were removed one
+     * at a time, in order.
+     */
+    protected boolean removeMatching (Collection<?> collection, boolean remove) {
+        checkMutate();
+        // hash large collections for constant time lookups (sets are assumed to be fast already)
+        if (collection.size() > 8 && !(collection instanceof Set<?>)) {
+            collection = new HashSet<Object>(collection);
+        }
+        List<E> kept = new ArrayList<E>(_impl.size());
+        List<List<E>> runs = null;
+        List<Integer> starts = null;
+        List<E> run = null;
+        for (E elem : _impl) {
+            if (collection.contains(elem) != remove) {
+                kept.add(elem);
+                run = null;
+                continue;
+            }
+            if (run == null) {
+                if (runs == null) {
+                    runs = new ArrayList<List<E>>();
+                    starts = new ArrayList<Integer>();
                 }
-                if (cons.oneShot()) cons.disconnect();
+                runs.add(run = new ArrayList<E>());
+                starts.add(kept.size());
             }
-        } finally {
-            finishNotify(lners);
+            run.add(elem);
         }
-        if (error != null) error.trigger();
+        if (runs == null) return false;
+
+        _impl.clear();
+        _impl.addAll(kept);
+        if (_index != null) {
+            for (List<E> removed : runs) for (E elem : removed) indexRemove(elem);
+        }
+        for (int ii = 0, ll = runs.size(); ii < ll; ii++) {
+            emitRemoveRange(starts.get(ii), runs.get(ii));
+        }
+        return true;
+    }
+
+    /** Notes that {@code elem} was added to the list, if we're indexed. */
+    protected void indexAdd (Object elem) {
+        if (_index == null) return;
+        int[] count = _index.get(elem);
+        if (count == null) _index.put(elem, new int[] { 1 });
+        else count[0]++;
+    }
+
+    /** Notes that {@code elem} was removed from the list, if we're indexed. */
+    protected void indexRemove (Object elem) {
+        if (_index == null) return;
+        int[] count = _index.get(elem);
+        if (count != null && --count[0] == 0) _index.remove(elem);
+    }
+
+    protected void emitAdd (int index, E elem) {
+        if (_range != null) _range.add(elem);
+        else if (_scheduler != null) deferEvent(ADD, index, elem, null);
+        else dispatch(ADD, index, elem, null);
     }
 
     protected void emitSet (int index, E newElem, E oldElem) {
-        Cons<Listener<E>> lners = prepareNotify();
-        MultiFailureException error = null;
-        try {
-            for (Cons<Listener<E>> cons = lners; cons != null; cons = cons.next) {
-                try {
-                    cons.listener().onSet(index, newElem, oldElem);
-                } catch (Throwable t) {
-                    if (error == null) error = new MultiFailureException();
-                    error.addFailure(t);
-                }
-                if (cons.oneShot()) cons.disconnect();
+        if (_range != null) {
+            _range.add(newElem);
+            _oldRange.add(oldElem);
+        } else if (_scheduler == null) dispatch(SET, index, newElem, oldElem);
+        else {
+            Integer pos = (_deferredSets == null) ? null : _deferredSets.get(index);
+            if (pos != null) _deferredEvents.set(pos+2, newElem);
+            else {
+                deferEvent(SET, index, newElem, oldElem);
+                if (_deferredSets == null) _deferredSets = new HashMap<Integer,Integer>();
+                _deferredSets.put(index, _deferredEvents.size()-4);
             }
-        } finally {
-            finishNotify(lners);
         }
-        if (error != null) error.trigger();
     }
 
     protected void emitRemove (int index, E elem) {
-        Cons<Listener<E>> lners = prepareNotify();
-        MultiFailureException error = null;
+        if (_range != null) _range.add(elem);
+        else if (_scheduler != null) deferEvent(REMOVE, index, elem, null);
+        else dispatch(REMOVE, index, elem, null);
+    }
+
+    /**
+     * Emits a range of added elements. Each element is first passed through {@link #emitAdd}, as
+     * if the elements were added one at a time, which collects it into the range rather than
+     * emitting it. Thus overrides of {@link #emitAdd} see every added element.
+     */
+    protected void emitAddRange (int index, List<E> elems) {
+        List<E> orange = _range, range = _range = new ArrayList<E>(elems.size());
         try {
-            for (Cons<Listener<E>> cons = lners; cons != null; cons = cons.next) {
-                try {
-                    cons.listener().onRemove(index, elem);
-                } catch (Throwable t) {
-                    if (error == null) error = new MultiFailureException();
-                    error.addFailure(t);
-                }
-                if (cons.oneShot()) cons.disconnect();
+            for (int ii = 0, ll = elems.size(); ii < ll; ii++) emitAdd(index+ii, elems.get(ii));
+        } finally {
+            _range = orange;
+        }
+        if (range.isEmpty()) return;
+        range = Collections.unmodifiableList(range);
+        if (_scheduler != null) deferEvent(ADD_RANGE, index, range, null);
+        else dispatch(ADD_RANGE, index, range, null);
+    }
+
+    /**
+     * Emits a range of updated elements. Each element is first passed through {@link #emitSet},
+     * which collects it into the range rather than emitting it.
+     */
+    protected void emitSetRange (int index, List<E> newElems, List<E> oldElems) {
+        List<E> orange = _range, ooldRange = _oldRange;
+        List<E> range = _range = new ArrayList<E>(newElems.size());
+        List<E> oldRange = _oldRange = new ArrayList<E>(newElems.size());
+        try {
+            for (int ii = 0, ll = newElems.size(); ii < ll; ii++) {
+                emitSet(index+ii, newElems.get(ii), oldElems.get(ii));
             }
         } finally {
-            finishNotify(lners);
+            _range = orange;
+            _oldRange = ooldRange;
+        }
+        if (range.isEmpty()) return;
+        range = Collections.unmodifiableList(range);
+        oldRange = Collections.unmodifiableList(oldRange);
+        if (_scheduler != null) deferEvent(SET_RANGE, index, range, oldRange);
+        else dispatch(SET_RANGE, index, range, oldRange);
+    }
+
+    /**
+     * Emits a range of removed elements. Each element is first passed through {@link
+     * #emitRemove}, as if the elements were removed one at a time, which collects it into the
+     * range rather than emitting it.
+     */
+    protected void emitRemoveRange (int index, List<E> elems) {
+        List<E> orange = _range, range = _range = new ArrayList<E>(elems.size());
+        try {
+            for (int ii = 0, ll = elems.size(); ii < ll; ii++) emitRemove(index, elems.get(ii));
+        } finally {
+            _range = orange;
+        }
+        if (range.isEmpty()) return;
+        range = Collections.unmodifiableList(range);
+        if (_scheduler != null) deferEvent(REMOVE_RANGE, index, range, null);
+        else dispatch(REMOVE_RANGE, index, range, null);
+    }
+
+    /**
+     * Records an event to be delivered when our scheduler is flushed, and queues us to be flushed.
+     * Updates made after this event are not coalesced with those made before it, unless it too is
+     * an update.
+     */
+    protected void deferEvent (Notifier notifier, int index, Object a2, Object a3) {
+        if (_deferredEvents == null) _deferredEvents = new ArrayList<Object>();
+        if (notifier != SET && _deferredSets != null) _deferredSets.clear();
+        _deferredEvents.add(notifier);
+        _deferredEvents.add(index);
+        _deferredEvents.add(a2);
+        _deferredEvents.add(a3);
+        if (!_deferred) _scheduler.defer(this);
+    }
+
+    @Override protected void flushDeferred () {
+        List<Object> events = _deferredEvents;
+        if (events == null || events.isEmpty()) return;
+        _deferredEvents = null;
+        _deferredSets = null;
+        MultiFailureException error = null;
+        for (int ii = 0, ll = events.size(); ii < ll; ii += 4) {
+            Notifier notifier = (Notifier)events.get(ii);
+            Object a2 = events.get(ii+2), a3 = events.get(ii+3);
+            if (notifier == SET && areEqual(a2, a3)) continue; // updated back to its old element
+            try {
+                dispatch(notifier, events.get(ii+1), a2, a3);
+            } catch (Throwable t) {
+                error = ReactScheduler.collect(error, t);
+            }
         }
         if (error != null) error.trigger();
     }
@@ -371,5 +666,65 @@ public class RList<E> extends Reactor<RList.Listener<E>>
     /** Used to expose the size of this list as a value. Initialized lazily. */
     protected Value<Integer> _sizeView;
 
+    /** The number of times each element occurs in the list, if we're indexed, or null. */
+    protected Map<Object,int[]> _index;
+
+    /** The events made since our scheduler was last flushed (notifier, index and two arguments
+     * for each), or null. */
+    protected List<Object> _deferredEvents;
+
+    /** The elements (and old elements, for updates) of the range being emitted, or null. */
+    protected List<E> _range, _oldRange;
+
+    /** The position in {@link #_deferredEvents} of the update to each index made since the most
+     * recent deferred addition or removal, or null. */
+    protected Map<Integer,Integer> _deferredSets;
+
     protected static final Listener<Object> NOOP = new Listener<Object>() {};
+
+    protected static final Notifier ADD = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            l.onAdd((Integer)a1, a2);
+        }
+    };
+
+    protected static final Notifier SET = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            l.onSet((Integer)a1, a2, a3);
+        }
+    };
+
+    protected static final Notifier REMOVE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            l.onRemove((Integer)a1, a2);
+        }
+    };
+
+    protected static final Notifier ADD_RANGE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            @SuppressWarnings("unchecked") List<Object> elems = (List<Object>)a2;
+            l.onAddRange((Integer)a1, elems);
+        }
+    };
+
+    protected static final Notifier SET_RANGE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            @SuppressWarnings("unchecked") List<Object> nelems = (List<Object>)a2;
+            @SuppressWarnings("unchecked") List<Object> oelems = (List<Object>)a3;
+            l.onSetRange((Integer)a1, nelems, oelems);
+        }
+    };
+
+    protected static final Notifier REMOVE_RANGE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            @SuppressWarnings("unchecked") List<Object> elems = (List<Object>)a2;
+            l.onRemoveRange((Integer)a1, elems);
+        }
+    };
 }
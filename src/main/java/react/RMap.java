@@ -7,10 +7,12 @@ package react;
 
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -52,6 +54,90 @@ public class RMap<K,V> extends Reactor<RMap.Listener<K,V>>
         public void onRemove (K key) {
             // noop
         }
+
+        /**
+         * Notifies listener of a batch of changes, made between {@link RMap#startBatch} and {@link
+         * RMap#commitBatch}. This method will call {@link #onPut(Object,Object,Object)} or {@link
+         * #onRemove(Object,Object)} for each change, in the order they were made, by default.
+         */
+        public void onChanges (ChangeSet<K,V> changes) {
+            for (int ii = 0, ll = changes.size(); ii < ll; ii++) {
+                if (changes.isRemove(ii)) onRemove(changes.key(ii), changes.oldValue(ii));
+                else onPut(changes.key(ii), changes.value(ii), changes.oldValue(ii));
+            }
+        }
+    }
+
+    /**
+     * The changes made to a map during a batch, in the order in which they were made. Each change
+     * is either a put (an added or updated mapping) or a removal.
+     */
+    public static final class ChangeSet<K,V>
+    {
+        /** Returns the number of changes in this set. */
+        public int size () {
+            return _size;
+        }
+
+        /** Returns the key affected by the {@code index}th change. */
+        public K key (int index) {
+            @SuppressWarnings("unchecked") K key = (K)_data[check(index)];
+            return key;
+        }
+
+        /** Returns the value mapped by the {@code index}th change, or null for a removal. */
+        public V value (int index) {
+            Object value = _data[check(index)+1];
+            @SuppressWarnings("unchecked") V cvalue = (value == REMOVED) ? null : (V)value;
+            return cvalue;
+        }
+
+        /** Returns the value previously mapped to the key affected by the {@code index}th change,
+         * or null if there was no previous mapping. */
+        public V oldValue (int index) {
+            @SuppressWarnings("unchecked") V ovalue = (V)_data[check(index)+2];
+            return ovalue;
+        }
+
+        /** Returns true if the {@code index}th change is a removal, false if it is a put. */
+        public boolean isRemove (int index) {
+            return _data[check(index)+1] == REMOVED;
+        }
+
+        @Override public String toString () {
+            StringBuilder buf = new StringBuilder("ChangeSet[");
+            for (int ii = 0; ii < _size; ii++) {
+                if (ii > 0) buf.append(", ");
+                if (isRemove(ii)) buf.append("-").append(key(ii));
+                else buf.append(key(ii)).append("=").append(value(ii));
+            }
+            return buf.append("]").toString();
+        }
+
+        protected void add (Object key, Object value, Object ovalue) {
+            int idx = 3*_size;
+            if (idx == _data.length) {
+                Object[] data = new Object[_data.length*2];
+                System.arraycopy(_data, 0, data, 0, idx);
+                _data = data;
+            }
+            _data[idx] = key;
+            _data[idx+1] = value;
+            _data[idx+2] = ovalue;
+            _size++;
+        }
+
+        protected int check (int index) {
+            if (index < 0 || index >= _size) throw new IndexOutOfBoundsException(
+                "Index: " + index + ", Size: " + _size);
+            return 3*index;
+        }
+
+        /** Key, value (or {@link #REMOVED}) and old value, for each change. */
+        protected Object[] _data = new Object[3*8];
+        protected int _size;
+
+        protected static final Object REMOVED = new Object();
     }
 
     /**
@@ -125,53 +211,90 @@ public class RMap<K,V> extends Reactor<RMap.Listener<K,V>>
         return ovalue;
     }
 
+    /**
+     * Starts a batch of changes. Until the matching call to {@link #commitBatch}, changes to this
+     * map are not dispatched to listeners; they are instead delivered in a single notification
+     * (see {@link Listener#onChanges}) when the batch is committed. Batches may be nested, in
+     * which case the changes are delivered when the outermost batch is committed. Callers should
+     * commit in a {@code finally} block:
+     *
+     * <pre>{@code
+     * map.startBatch();
+     * try {
+     *   // make changes...
+     * } finally {
+     *   map.commitBatch();
+     * }
+     * }</pre>
+     */
+    public void startBatch () {
+        if (_batchDepth++ == 0) _batch = new ChangeSet<K,V>();
+    }
+
+    /**
+     * Commits the batch started by the matching call to {@link #startBatch}. If this completes the
+     * outermost batch and any changes were made, they are dispatched to listeners.
+     * @throws IllegalStateException if no batch is in progress.
+     */
+    public void commitBatch () {
+        if (_batchDepth == 0) throw new IllegalStateException("No batch in progress");
+        if (--_batchDepth > 0) return;
+        ChangeSet<K,V> changes = _batch;
+        _batch = null;
+        if (changes.size() > 0) notifyChanges(changes);
+    }
+
+    /**
+     * Configures this map to defer its notifications to {@code scheduler}: changes are recorded
+     * rather than dispatched, and when the scheduler is flushed, the net change to each affected
+     * key since the previous flush is delivered in a single notification (see {@link
+     * Listener#onChanges}), in the order in which the keys were first changed. A key that was put
+     * and then removed (or restored to its previous value) yields no change. Passing null restores
+     * immediate notification (changes already recorded are still delivered by the flush).
+     * @see ReactScheduler
+     */
+    public void setScheduler (ReactScheduler scheduler) {
+        _scheduler = scheduler;
+    }
+
+    /**
+     * Returns the scheduler to which this map's notifications are deferred, or null.
+     */
+    public ReactScheduler scheduler () {
+        return _scheduler;
+    }
+
     /**
      * Returns a value view that models whether the specified key is contained in this map. The
      * view will report a change when a mapping for the specified key is added or removed. Note:
      * this view only works on maps that <em>do not</em> contain mappings to {@code null}. The view
      * will retain a connection to this map for as long as it has connections of its own.
+     *
+     * <p>Changes are routed directly to the views for the changed key, so the cost of a change does
+     * not depend on the number of views. Repeated calls for a key return the same view, while that
+     * view is connected.</p>
      */
     public ValueView<Boolean> containsKeyView (final K key) {
         if (key == null) throw new NullPointerException("Must supply non-null 'key'.");
-        return new MappedValue<Boolean>() {
-            @Override public Boolean get () {
-                return containsKey(key);
-            }
-            @Override protected Connection connect () {
-                return RMap.this.connect(new RMap.Listener<K,V>() {
-                    @Override public void onPut (K pkey, V value, V ovalue) {
-                        if (key.equals(pkey) && ovalue == null) notifyChange(true, false);
-                    }
-                    @Override public void onRemove (K rkey, V ovalue) {
-                        if (key.equals(rkey)) notifyChange(false, true);
-                    }
-                });
-            }
-        };
+        @SuppressWarnings("unchecked") ValueView<Boolean> view =
+            (ValueView<Boolean>)keyViews().find(key, ContainsKeyView.class);
+        return (view != null) ? view : new ContainsKeyView(key);
     }
 
     /**
      * Returns a value view that models the mapping of the specified key in this map. The view will
      * report a change when the mapping for the specified key is changed or removed. The view will
      * retain a connection to this map for as long as it has connections of its own.
+     *
+     * <p>Changes are routed directly to the views for the changed key, so the cost of a change does
+     * not depend on the number of views. Repeated calls for a key return the same view, while that
+     * view is connected.</p>
      */
     public ValueView<V> getView (final K key) {
         if (key == null) throw new NullPointerException("Must supply non-null 'key'.");
-        return new MappedValue<V>() {
-            @Override public V get () {
-                return RMap.this.get(key);
-            }
-            @Override protected Connection connect () {
-                return RMap.this.connect(new RMap.Listener<K,V>() {
-                    @Override public void onPut (K pkey, V value, V ovalue) {
-                        if (key.equals(pkey)) notifyChange(value, ovalue);
-                    }
-                    @Override public void onRemove (K pkey, V ovalue) {
-                        if (key.equals(pkey)) notifyChange(null, ovalue);
-                    }
-                });
-            }
-        };
+        @SuppressWarnings("unchecked") ValueView<V> view =
+            (ValueView<V>)keyViews().find(key, GetView.class);
+        return (view != null) ? view : new GetView(key);
     }
 
     /**
@@ -188,6 +311,9 @@ public class RMap<K,V> extends Reactor<RMap.Listener<K,V>>
                 @Override public void onRemove (K key) {
                     _sizeView.update(size());
                 }
+                @Override public void onChanges (ChangeSet<K,V> changes) {
+                    _sizeView.update(size());
+                }
             });
         }
         return _sizeView;
@@ -258,8 +384,13 @@ public class RMap<K,V> extends Reactor<RMap.Listener<K,V>>
 
     // from interface Map<K,V>
     public void putAll (Map<? extends K, ? extends V> map) {
-        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
-            put(entry.getKey(), entry.getValue());
+        startBatch();
+        try {
+            for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            commitBatch();
         }
     }
 
@@ -268,9 +399,14 @@ public class RMap<K,V> extends Reactor<RMap.Listener<K,V>>
         checkMutate();
         // generate removed events for our keys (do so on a copy of our set so that we can clear
         // our underlying map before any of the published events are processed)
-        Set<Map.Entry<K,V>> entries = new HashSet<Map.Entry<K,V>>(_impl.entrySet());
+        List<Map.Entry<K,V>> entries = new ArrayList<Map.Entry<K,V>>(_impl.entrySet());
         _impl.clear();
-        for (Map.Entry<K,V> entry : entries) emitRemove(entry.getKey(), entry.getValue());
+        startBatch();
+        try {
+            for (Map.Entry<K,V> entry : entries) emitRemove(entry.getKey(), entry.getValue());
+        } finally {
+            commitBatch();
+        }
     }
 
     // from interface Map<K,V>
@@ -420,55 +556,115 @@ public class RMap<K,V> extends Reactor<RMap.Listener<K,V>>
         };
     }
 
+    /**
+     * Returns the index via which changes are routed to our per-key views, creating it if needed.
+     */
+    protected synchronized KeyIndex keyViews () {
+        if (_keyViews == null) {
+            _keyViews = new KeyIndex() {
+                @Override protected Connection connectRouter () {
+                    return connect(new Listener<K,V>() {
+                        @Override public void onPut (K key, V value, V ovalue) {
+                            route(key, true, value, ovalue);
+                        }
+                        @Override public void onRemove (K key, V ovalue) {
+                            route(key, false, null, ovalue);
+                        }
+                    });
+                }
+            };
+        }
+        return _keyViews;
+    }
+
+    /** Models whether a key is contained in this map. See {@link #containsKeyView}. */
+    protected class ContainsKeyView extends KeyIndex.View<Boolean> {
+        public ContainsKeyView (K key) {
+            super(keyViews(), key);
+        }
+        @Override public Boolean get () {
+            noteRead();
+            return containsKey(_key);
+        }
+        @Override protected void onKeyChange (boolean present, Object value, Object ovalue) {
+            if (!present) notifyChange(false, true);
+            else if (ovalue == null) notifyChange(true, false);
+        }
+    }
+
+    /** Models the mapping of a key in this map. See {@link #getView}. */
+    protected class GetView extends KeyIndex.View<V> {
+        public GetView (K key) {
+            super(keyViews(), key);
+        }
+        @Override public V get () {
+            noteRead();
+            return RMap.this.get(_key);
+        }
+        @Override protected void onKeyChange (boolean present, Object value, Object ovalue) {
+            @SuppressWarnings("unchecked") V nvalue = (V)value, oldValue = (V)ovalue;
+            notifyChange(nvalue, oldValue);
+        }
+    }
+
     @Override Listener<K,V> placeholderListener () {
         @SuppressWarnings("unchecked") Listener<K,V> p = (Listener<K,V>)NOOP;
         return p;
     }
 
     protected void emitPut (K key, V value, V oldValue) {
-        notifyPut(key, value, oldValue);
+        if (_scheduler != null) deferChange(key, oldValue);
+        else notifyPut(key, value, oldValue);
     }
 
     protected void notifyPut (K key, V value, V oldValue) {
-        Cons<Listener<K,V>> lners = prepareNotify();
-        MultiFailureException error = null;
-        try {
-            for (Cons<Listener<K,V>> cons = lners; cons != null; cons = cons.next) {
-                try {
-                    cons.listener().onPut(key, value, oldValue);
-                } catch (Throwable t) {
-                    if (error == null) error = new MultiFailureException();
-                    error.addFailure(t);
-                }
-                if (cons.oneShot()) cons.disconnect();
-            }
-        } finally {
-            finishNotify(lners);
-        }
-        if (error != null) error.trigger();
+        if (_batch != null) _batch.add(key, value, oldValue);
+        else dispatch(PUT, key, value, oldValue);
     }
 
     protected void emitRemove (K key, V oldValue) {
-        notifyRemove(key, oldValue);
+        if (_scheduler != null) deferChange(key, oldValue);
+        else notifyRemove(key, oldValue);
     }
 
     protected void notifyRemove (K key, V oldValue) {
-        Cons<Listener<K,V>> lners = prepareNotify();
-        MultiFailureException error = null;
-        try {
-            for (Cons<Listener<K,V>> cons = lners; cons != null; cons = cons.next) {
-                try {
-                    cons.listener().onRemove(key, oldValue);
-                } catch (Throwable t) {
-                    if (error == null) error = new MultiFailureException();
-                    error.addFailure(t);
-                }
-                if (cons.oneShot()) cons.disconnect();
-            }
-        } finally {
-            finishNotify(lners);
+        if (_batch != null) _batch.add(key, ChangeSet.REMOVED, oldValue);
+        else dispatch(REMOVE, key, oldValue, null);
+    }
+
+    protected void notifyChanges (ChangeSet<K,V> changes) {
+        dispatch(CHANGES, changes, null, null);
+    }
+
+    /**
+     * Records a change to the mapping for {@code key} (which mapped {@code oldValue}, if it was
+     * mapped at all) to be delivered when our scheduler is flushed, and queues us to be flushed.
+     * Only the first change to each key since the previous flush is recorded.
+     */
+    protected void deferChange (K key, V oldValue) {
+        if (_deferredChanges == null) _deferredChanges = new LinkedHashMap<K,Object>();
+        // a mapping to null is indistinguishable from no mapping here, and is treated as such
+        if (!_deferredChanges.containsKey(key)) {
+            _deferredChanges.put(key, (oldValue == null) ? ChangeSet.REMOVED : oldValue);
+        }
+        if (!_deferred) _scheduler.defer(this);
+    }
+
+    @Override protected void flushDeferred () {
+        Map<K,Object> deferred = _deferredChanges;
+        if (deferred == null || deferred.isEmpty()) return;
+        _deferredChanges = null;
+        ChangeSet<K,V> changes = new ChangeSet<K,V>();
+        for (Map.Entry<K,Object> entry : deferred.entrySet()) {
+            K key = entry.getKey();
+            Object ovalue = entry.getValue();
+            if (_impl.containsKey(key)) {
+                V value = _impl.get(key);
+                if (ovalue == ChangeSet.REMOVED) changes.add(key, value, null);
+                else if (!areEqual(value, ovalue)) changes.add(key, value, ovalue);
+            } else if (ovalue != ChangeSet.REMOVED) changes.add(key, ChangeSet.REMOVED, ovalue);
         }
-        if (error != null) error.trigger();
+        if (changes.size() > 0) notifyChanges(changes);
     }
 
     /** Contains our underlying mappings. */
@@ -477,5 +673,44 @@ public class RMap<K,V> extends Reactor<RMap.Listener<K,V>>
     /** Used to expose the size of this map as a value. Initialized lazily. */
     protected Value<Integer> _sizeView;
 
+    /** Routes changes to our per-key views. Initialized lazily. */
+    protected KeyIndex _keyViews;
+
+    /** The changes made during the current batch, or null. */
+    protected ChangeSet<K,V> _batch;
+
+    /** The nesting depth of the current batch. */
+    protected int _batchDepth;
+
+    /** The keys changed since our scheduler was last flushed, mapped to their values as of that
+     * flush ({@link ChangeSet#REMOVED} if they were not mapped), or null. */
+    protected Map<K,Object> _deferredChanges;
+
     protected static final Listener<Object,Object> NOOP = new Listener<Object,Object>() {};
+
+    protected static final Notifier PUT = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object,Object> l =
+                (Listener<Object,Object>)lner;
+            l.onPut(a1, a2, a3);
+        }
+    };
+
+    protected static final Notifier REMOVE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object,Object> l =
+                (Listener<Object,Object>)lner;
+            l.onRemove(a1, a2);
+        }
+    };
+
+    protected static final Notifier CHANGES = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object,Object> l =
+                (Listener<Object,Object>)lner;
+            @SuppressWarnings("unchecked") ChangeSet<Object,Object> changes =
+                (ChangeSet<Object,Object>)a1;
+            l.onChanges(changes);
+        }
+    };
 }
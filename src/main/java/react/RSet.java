@@ -7,9 +7,13 @@ package react;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -34,6 +38,17 @@ public class RSet<E> extends Reactor<RSet.Listener<E>>
         public void onRemove (E elem) {
             // noop
         }
+
+        /**
+         * Notifies listener of a bulk change to the set: the elements in {@code added} were added
+         * and those in {@code removed} were removed (either may be empty). This method will call
+         * {@link #onRemove} for each removed element, then {@link #onAdd} for each added element,
+         * by default.
+         */
+        public void onChanged (Set<E> added, Set<E> removed) {
+            for (E elem : removed) onRemove(elem);
+            for (E elem : added) onAdd(elem);
+        }
     }
 
     /**
@@ -97,29 +112,114 @@ public class RSet<E> extends Reactor<RSet.Listener<E>>
         return removed;
     }
 
+    /**
+     * Replaces the contents of this set with the elements of {@code elems}, adding and removing
+     * only those elements needed to do so. Listeners are notified of the changes via a single call
+     * to {@link Listener#onChanged}, if any changes were made.
+     * @return true if this set was modified.
+     */
+    public boolean setAll (Collection<? extends E> elems) {
+        checkMutate();
+        Collection<? extends E> target = (elems instanceof Set<?>) ? elems : new HashSet<E>(elems);
+        boolean modified = false;
+        startBatch();
+        try {
+            for (Iterator<E> iter = _impl.iterator(); iter.hasNext(); ) {
+                E elem = iter.next();
+                if (!target.contains(elem)) {
+                    iter.remove();
+                    emitRemove(elem);
+                    modified = true;
+                }
+            }
+            for (E elem : target) {
+                if (_impl.add(elem)) {
+                    emitAdd(elem);
+                    modified = true;
+                }
+            }
+        } finally {
+            commitBatch();
+        }
+        return modified;
+    }
+
     /**
      * Returns a value that models whether the specified element is contained in this map. The
      * value will report a change when the specified element is added or removed. Note that {@link
      * #addForce} or {@link #removeForce} will cause this view to trigger and incorrectly report
      * that the element was not or was previously contained in the set. Caveat user.
+     *
+     * <p>Changes are routed directly to the views for the changed element, so the cost of a change
+     * does not depend on the number of views. Repeated calls for an element return the same view,
+     * while that view is connected.</p>
      */
-    public ValueView<Boolean> containsView (final E elem) {
+    public ValueView<Boolean> containsView (E elem) {
         if (elem == null) throw new NullPointerException("Must supply non-null 'elem'.");
-        return new MappedValue<Boolean>() {
-            @Override public Boolean get () {
-                return contains(elem);
-            }
-            @Override protected Connection connect () {
-                return RSet.this.connect(new RSet.Listener<E>() {
-                    @Override public void onAdd (E aelem) {
-                        if (elem.equals(aelem)) notifyChange(true, false);
-                    }
-                    @Override public void onRemove (E relem) {
-                        if (elem.equals(relem)) notifyChange(false, true);
-                    }
-                });
-            }
-        };
+        @SuppressWarnings("unchecked") ValueView<Boolean> view =
+            (ValueView<Boolean>)elemViews().find(elem, ContainsView.class);
+        return (view != null) ? view : new ContainsView(elem);
+    }
+
+    /**
+     * Starts a batch of changes. Until the matching call to {@link #commitBatch}, changes to this
+     * set are not dispatched to listeners; they are instead delivered in a single notification
+     * (see {@link Listener#onChanged}) when the batch is committed. An element that is added and
+     * then removed (or vice versa) within the batch is not reported. Batches may be nested, in
+     * which case the changes are delivered when the outermost batch is committed. Callers should
+     * commit in a {@code finally} block:
+     *
+     * <pre>{@code
+     * set.startBatch();
+     * try {
+     *   // make changes...
+     * } finally {
+     *   set.commitBatch();
+     * }
+     * }</pre>
+     *
+     * <p>Bulk operations make their changes in a batch, via {@link #emitAdd} and {@link
+     * #emitRemove}, so that overrides of those methods see every change.</p>
+     */
+    public void startBatch () {
+        if (_batchDepth++ > 0) return;
+        _batchAdded = new LinkedHashSet<E>();
+        _batchRemoved = new LinkedHashSet<E>();
+    }
+
+    /**
+     * Commits the batch started by the matching call to {@link #startBatch}. If this completes the
+     * outermost batch and any changes were made, they are dispatched in a single notification (see
+     * {@link Listener#onChanged}).
+     * @throws IllegalStateException if no batch is in progress.
+     */
+    public void commitBatch () {
+        if (_batchDepth == 0) throw new IllegalStateException("No batch in progress");
+        if (--_batchDepth > 0) return;
+        Set<E> added = _batchAdded, removed = _batchRemoved;
+        _batchAdded = _batchRemoved = null;
+        if (!added.isEmpty() || !removed.isEmpty()) notifyChanged(
+            Collections.unmodifiableSet(added), Collections.unmodifiableSet(removed));
+    }
+
+    /**
+     * Configures this set to defer its notifications to {@code scheduler}: changes are recorded
+     * rather than dispatched, and when the scheduler is flushed, the elements that were added or
+     * removed since the previous flush are delivered in a single notification (see {@link
+     * Listener#onChanged}), in the order in which they were first changed. An element that was
+     * added and then removed (or vice versa) yields no change. Passing null restores immediate
+     * notification (changes already recorded are still delivered by the flush).
+     * @see ReactScheduler
+     */
+    public void setScheduler (ReactScheduler scheduler) {
+        _scheduler = scheduler;
+    }
+
+    /**
+     * Returns the scheduler to which this set's notifications are deferred, or null.
+     */
+    public ReactScheduler scheduler () {
+        return _scheduler;
     }
 
     /**
@@ -136,6 +236,9 @@ public class RSet<E> extends Reactor<RSet.Listener<E>>
                 @Override public void onRemove (E elem) {
                     _sizeView.update(size());
                 }
+                @Override public void onChanged (Set<E> added, Set<E> removed) {
+                    _sizeView.update(size());
+                }
             });
         }
         return _sizeView;
@@ -180,30 +283,62 @@ public class RSet<E> extends Reactor<RSet.Listener<E>>
 
     // from interface Set<E>
     public boolean addAll (Collection<? extends E> coll) {
+        checkMutate();
         boolean modified = false;
-        for (E elem : coll) {
-            modified |= add(elem);
+        startBatch();
+        try {
+            for (E elem : coll) {
+                if (_impl.add(elem)) {
+                    emitAdd(elem);
+                    modified = true;
+                }
+            }
+        } finally {
+            commitBatch();
         }
         return modified;
     }
 
     // from interface Set<E>
     public boolean retainAll (Collection<?> coll) {
+        checkMutate();
         boolean modified = false;
-        for (Iterator<E> iter = iterator(); iter.hasNext(); ) {
-            if (!coll.contains(iter.next())) {
-                iter.remove();
-                modified = true;
+        startBatch();
+        try {
+            for (Iterator<E> iter = _impl.iterator(); iter.hasNext(); ) {
+                E elem = iter.next();
+                if (!coll.contains(elem)) {
+                    iter.remove();
+                    emitRemove(elem);
+                    modified = true;
+                }
             }
+        } finally {
+            commitBatch();
         }
         return modified;
     }
 
     // from interface Set<E>
     public boolean removeAll (Collection<?> coll) {
+        if (coll == this) {
+            boolean modified = !isEmpty();
+            clear();
+            return modified;
+        }
+        checkMutate();
         boolean modified = false;
-        for (Iterator<?> iter = coll.iterator(); iter.hasNext(); ) {
-            modified |= remove(iter.next());
+        startBatch();
+        try {
+            for (Object rawElem : coll) {
+                if (_impl.remove(rawElem)) {
+                    @SuppressWarnings("unchecked") E elem = (E)rawElem;
+                    emitRemove(elem);
+                    modified = true;
+                }
+            }
+        } finally {
+            commitBatch();
         }
         return modified;
     }
@@ -211,11 +346,17 @@ public class RSet<E> extends Reactor<RSet.Listener<E>>
     // from interface Set<E>
     public void clear () {
         checkMutate();
-        // generate removed events for our elemens (do so on a copy of our set so that we can clear
-        // our underlying set before any of the published events are processed)
-        List<E> elems = new ArrayList<E>(_impl);
+        if (_impl.isEmpty()) return;
+        // generate removed events for our elements (do so on a copy of our set so that we can
+        // clear our underlying set before the published event is processed)
+        List<E> removed = new ArrayList<E>(_impl);
         _impl.clear();
-        for (E elem : elems) emitRemove(elem);
+        startBatch();
+        try {
+            for (E elem : removed) emitRemove(elem);
+        } finally {
+            commitBatch();
+        }
     }
 
     // from interface Set<E>
@@ -259,55 +400,118 @@ public class RSet<E> extends Reactor<RSet.Listener<E>>
         return "RSet" + _impl;
     }
 
+    /**
+     * Returns the index via which changes are routed to our per-element views, creating it if
+     * needed.
+     */
+    protected synchronized KeyIndex elemViews () {
+        if (_elemViews == null) {
+            _elemViews = new KeyIndex() {
+                @Override protected Connection connectRouter () {
+                    return connect(new Listener<E>() {
+                        @Override public void onAdd (E elem) {
+                            route(elem, true, null, null);
+                        }
+                        @Override public void onRemove (E elem) {
+                            route(elem, false, null, null);
+                        }
+                        @Override public void onChanged (Set<E> added, Set<E> removed) {
+                            // if the change is larger than our index, look up our keys in the
+                            // change rather than each changed element in our index
+                            if (added.size() + removed.size() <= size()) {
+                                super.onChanged(added, removed);
+                                return;
+                            }
+                            for (Object key : new ArrayList<Object>(_views.keySet())) {
+                                if (removed.contains(key)) route(key, false, null, null);
+                                if (added.contains(key)) route(key, true, null, null);
+                            }
+                        }
+                    });
+                }
+            };
+        }
+        return _elemViews;
+    }
+
+    /** Models whether an element is contained in this set. See {@link #containsView}. */
+    protected class ContainsView extends KeyIndex.View<Boolean> {
+        public ContainsView (E elem) {
+            super(elemViews(), elem);
+        }
+        @Override public Boolean get () {
+            noteRead();
+            return contains(_key);
+        }
+        @Override protected void onKeyChange (boolean present, Object value, Object ovalue) {
+            notifyChange(present, !present);
+        }
+    }
+
     @Override Listener<E> placeholderListener () {
         @SuppressWarnings("unchecked") Listener<E> p = (Listener<E>)NOOP;
         return p;
     }
 
     protected void emitAdd (E elem) {
-        notifyAdd(elem);
+        if (_scheduler != null) deferChange(elem, false);
+        else notifyAdd(elem);
     }
 
     protected void notifyAdd (E elem) {
-        Cons<Listener<E>> lners = prepareNotify();
-        MultiFailureException error = null;
-        try {
-            for (Cons<Listener<E>> cons = lners; cons != null; cons = cons.next) {
-                try {
-                    cons.listener().onAdd(elem);
-                } catch (Throwable t) {
-                    if (error == null) error = new MultiFailureException();
-                    error.addFailure(t);
-                }
-                if (cons.oneShot()) cons.disconnect();
-            }
-        } finally {
-            finishNotify(lners);
-        }
-        if (error != null) error.trigger();
+        if (_batchDepth == 0) dispatch(ADD, elem, null, null);
+        else if (!_batchRemoved.remove(elem)) _batchAdded.add(elem);
     }
 
     protected void emitRemove (E elem) {
-        notifyRemove(elem);
+        if (_scheduler != null) deferChange(elem, true);
+        else notifyRemove(elem);
     }
 
     protected void notifyRemove (E elem) {
-        Cons<Listener<E>> lners = prepareNotify();
-        MultiFailureException error = null;
-        try {
-            for (Cons<Listener<E>> cons = lners; cons != null; cons = cons.next) {
-                try {
-                    cons.listener().onRemove(elem);
-                } catch (Throwable t) {
-                    if (error == null) error = new MultiFailureException();
-                    error.addFailure(t);
-                }
-                if (cons.oneShot()) cons.disconnect();
+        if (_batchDepth == 0) dispatch(REMOVE, elem, null, null);
+        else if (!_batchAdded.remove(elem)) _batchRemoved.add(elem);
+    }
+
+    protected void notifyChanged (Set<E> added, Set<E> removed) {
+        dispatch(CHANGED, added, removed, null);
+    }
+
+    /**
+     * Records that {@code elem} was added or removed (per {@code wasPresent}) to be delivered when
+     * our scheduler is flushed, and queues us to be flushed. Only the first change to each
+     * element since the previous flush is recorded.
+     */
+    protected void deferChange (E elem, boolean wasPresent) {
+        if (_deferredChanges == null) _deferredChanges = new LinkedHashMap<E,Boolean>();
+        if (!_deferredChanges.containsKey(elem)) _deferredChanges.put(elem, wasPresent);
+        if (!_deferred) _scheduler.defer(this);
+    }
+
+    @Override protected void flushDeferred () {
+        Map<E,Boolean> deferred = _deferredChanges;
+        if (deferred == null || deferred.isEmpty()) return;
+        _deferredChanges = null;
+        Set<E> added = null, removed = null;
+        for (Map.Entry<E,Boolean> entry : deferred.entrySet()) {
+            E elem = entry.getKey();
+            boolean present = _impl.contains(elem);
+            if (present == entry.getValue()) continue;
+            if (present) {
+                if (added == null) added = new LinkedHashSet<E>();
+                added.add(elem);
+            } else {
+                if (removed == null) removed = new LinkedHashSet<E>();
+                removed.add(elem);
             }
-        } finally {
-            finishNotify(lners);
         }
-        if (error != null) error.trigger();
+        if (added == null && removed == null) return;
+        // deliver a lone change as such, as it would have been delivered immediately
+        if (added == null && removed.size() == 1) notifyRemove(removed.iterator().next());
+        else if (removed == null && added.size() == 1) notifyAdd(added.iterator().next());
+        else notifyChanged(
+            (added == null) ? Collections.<E>emptySet() : Collections.unmodifiableSet(added),
+            (removed == null) ? Collections.<E>emptySet() : Collections.unmodifiableSet(removed));
     }
 
     /** Contains our underlying elements. */
@@ -316,5 +520,41 @@ public class RSet<E> extends Reactor<RSet.Listener<E>>
     /** Used to expose the size of this set as a value. Initialized lazily. */
     protected Value<Integer> _sizeView;
 
+    /** Routes changes to our per-element views. Initialized lazily. */
+    protected KeyIndex _elemViews;
+
+    /** The elements added and removed during the current batch, if any. */
+    protected Set<E> _batchAdded, _batchRemoved;
+
+    /** The depth of nested batches in progress. */
+    protected int _batchDepth;
+
+    /** The elements changed since our scheduler was last flushed, mapped to whether they were
+     * present as of that flush, or null. */
+    protected Map<E,Boolean> _deferredChanges;
+
     protected static final Listener<Object> NOOP = new Listener<Object>() {};
+
+    protected static final Notifier ADD = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            l.onAdd(a1);
+        }
+    };
+
+    protected static final Notifier REMOVE = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            l.onRemove(a1);
+        }
+    };
+
+    protected static final Notifier CHANGED = new Notifier() {
+        public void dispatch (Object lner, Object a1, Object a2, Object a3) {
+            @SuppressWarnings("unchecked") Listener<Object> l = (Listener<Object>)lner;
+            @SuppressWarnings("unchecked") Set<Object> added = (Set<Object>)a1;
+            @SuppressWarnings("unchecked") Set<Object> removed = (Set<Object>)a2;
+            l.onChanged(added, removed);
+        }
+    };
 }
@@ -0,0 +1,93 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+/**
+ * Defers change notifications to a frame or tick boundary. A value configured to use a scheduler
+ * (see {@link AbstractValue#setScheduler}) does not notify its listeners when it changes; rather
+ * it is marked dirty and queued, and when the scheduler is {@link #flush}ed, its listeners are
+ * notified once, of the change from the value they last observed to its latest value. Thus the
+ * number of notifications per frame is bounded by the number of values that changed, not the
+ * number of changes. For example:
+ *
+ * <pre>{@code
+ * ReactScheduler frame = new ReactScheduler();
+ * position.setScheduler(frame);
+ * // ... position is updated any number of times ...
+ * frame.flush(); // position's listeners are notified (at most) once
+ * }</pre>
+ *
+ * <p>Reactive collections may also use a scheduler, in which case their changes are likewise
+ * recorded and coalesced until it is flushed: a map delivers the net change to each key (see
+ * {@link RMap#setScheduler}), a set the net change to each element (see {@link
+ * RSet#setScheduler}), and a list its changes in order, with successive updates to the same index
+ * combined (see {@link RList#setScheduler}).</p>
+ *
+ * <p>Reactors are flushed in the order in which they were first changed since the previous flush.
+ * Changes made while flushing (by listeners, for example) are deferred to the next flush. A
+ * scheduler should be flushed by the thread that changes the reactors that use it.</p>
+ */
+public class ReactScheduler
+{
+    /**
+     * Returns true if changes are queued awaiting {@link #flush}.
+     */
+    public synchronized boolean hasPending () {
+        return _head != null;
+    }
+
+    /**
+     * Notifies the listeners of all reactors that changed since the previous flush. If listeners
+     * fail, the remaining reactors are nonetheless flushed, and the failures are then thrown.
+     */
+    public void flush () {
+        Reactor<?> head;
+        synchronized (this) {
+            head = _head;
+            _head = _tail = null;
+        }
+        MultiFailureException error = null;
+        for (Reactor<?> reactor = head, next; reactor != null; reactor = next) {
+            synchronized (this) {
+                next = reactor._nextDeferred;
+                reactor._nextDeferred = null;
+                reactor._deferred = false;
+            }
+            try {
+                reactor.flushDeferred();
+            } catch (Throwable t) {
+                error = collect(error, t);
+            }
+        }
+        if (error != null) error.trigger();
+    }
+
+    /**
+     * Adds {@code t} (or the failures it wraps, if it is a {@link MultiFailureException}) to
+     * {@code error}, creating it if it is null.
+     */
+    static MultiFailureException collect (MultiFailureException error, Throwable t) {
+        if (error == null) error = new MultiFailureException();
+        if (t instanceof MultiFailureException) {
+            for (Throwable f : ((MultiFailureException)t).failures()) error.addFailure(f);
+        } else error.addFailure(t);
+        return error;
+    }
+
+    /**
+     * Queues {@code reactor} to be flushed, if it is not already queued.
+     */
+    synchronized void defer (Reactor<?> reactor) {
+        if (reactor._deferred) return;
+        reactor._deferred = true;
+        if (_tail == null) _head = reactor;
+        else _tail._nextDeferred = reactor;
+        _tail = reactor;
+    }
+
+    /** The first and last reactors awaiting flush, chained via {@link Reactor#_nextDeferred}. */
+    protected Reactor<?> _head, _tail;
+}
@@ -15,18 +15,168 @@ public abstract class Reactor<L extends Reactor.RListener>
     /** The base class for all reactor listeners. */
     public abstract static class RListener {}
 
+    /** The ways in which a reactor may coordinate notifications with one another and with changes
+     * to its connections. See {@link Reactor#setDispatchMode}. */
+    public enum DispatchMode {
+        /** Notifications and connection changes are coordinated by holding a lock on the reactor.
+         * Initiating a notification while one is already in progress (on this thread or another)
+         * results in an {@link IllegalStateException}. This is the default. */
+        SERIAL,
+
+        /** Notifications take no lock: each notification reads the current listener list and
+         * notifies that snapshot, so concurrent or re-entrant notifications proceed in parallel.
+         * Connections and disconnections publish a new listener list via compare-and-set, and are
+         * seen by notifications initiated after they complete. Note that a one-shot connection may
+         * be notified by more than one notification if notifications race. */
+        CONCURRENT,
+
+        /** Like {@link #SERIAL}, but a notification initiated while one is already in progress
+         * (by a listener, or on another thread) is queued rather than rejected. Queued
+         * notifications are dispatched in the order in which they were initiated, by the thread
+         * that performed the in-progress notification, once it completes. Connections made or
+         * broken during a notification are applied before the next queued notification is
+         * dispatched. Failures in queued notifications are reported to the dispatching thread
+         * after the queue is drained. */
+        QUEUED
+    }
+
+    /** Determines how a reactor handles listeners that throw exceptions while being notified. See
+     * {@link Reactor#setFailurePolicy}. Only {@link #COLLECT} allocates in response to failures. */
+    public static abstract class FailurePolicy {
+        /** Notifies all listeners, then throws the failures (if any): a single failure is thrown as
+         * is, multiple failures are wrapped in a {@link MultiFailureException}. This is the
+         * default. */
+        public static final FailurePolicy COLLECT = new FailurePolicy() {
+            public MultiFailureException onFailure (
+                Reactor<?> reactor, MultiFailureException error, Throwable cause) {
+                if (error == null) error = new MultiFailureException();
+                error.addFailure(cause);
+                return error;
+            }
+        };
+
+        /** Throws the first failure immediately; listeners after the failed one are not notified.
+         * One-shot connections to the failed listener are still disconnected. */
+        public static final FailurePolicy FAIL_FAST = new FailurePolicy() {
+            public MultiFailureException onFailure (
+                Reactor<?> reactor, MultiFailureException error, Throwable cause) {
+                if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                if (cause instanceof Error) throw (Error)cause;
+                return COLLECT.onFailure(reactor, error, cause); // and trigger() wraps it
+            }
+        };
+
+        /** Counts and otherwise ignores failures, notifying all listeners regardless. */
+        public static class Counting extends FailurePolicy {
+            /** Returns the number of failures counted thus far. */
+            public synchronized int count () {
+                return _count;
+            }
+
+            /** Resets the number of failures counted to zero. */
+            public synchronized void reset () {
+                _count = 0;
+            }
+
+            @Override public MultiFailureException onFailure (
+                Reactor<?> reactor, MultiFailureException error, Throwable cause) {
+                synchronized (this) {
+                    _count++;
+                }
+                return error;
+            }
+
+            protected int _count;
+        }
+
+        /**
+         * Returns a policy that passes each failure to {@code handler} (to be logged, for example)
+         * and continues notifying the remaining listeners. Failures thrown by the handler itself
+         * are ignored.
+         */
+        public static FailurePolicy report (final Slot<? super Throwable> handler) {
+            return new FailurePolicy() {
+                public MultiFailureException onFailure (
+                    Reactor<?> reactor, MultiFailureException error, Throwable cause) {
+                    try {
+                        handler.onEmit(cause);
+                    } catch (Throwable t) {
+                        // nothing to be done, we're already handling a failure
+                    }
+                    return error;
+                }
+            };
+        }
+
+        /**
+         * Returns a policy that counts and otherwise ignores failures. Use a separate instance per
+         * reactor to obtain per-reactor counts.
+         */
+        public static Counting counting () {
+            return new Counting();
+        }
+
+        /**
+         * Called when a listener throws {@code cause} while {@code reactor} is notifying. The
+         * policy may throw (which ends the notification), or return the failures to be thrown once
+         * all listeners have been notified.
+         *
+         * @param error the failures collected thus far during this notification, or null.
+         * @return the failures collected thus far, or null.
+         */
+        public abstract MultiFailureException onFailure (
+            Reactor<?> reactor, MultiFailureException error, Throwable cause);
+    }
+
     /**
      * Returns true if this reactor has at least one connection.
      */
     public boolean hasConnections () {
-        return _listeners != null;
+        return _listeners.length > 0;
+    }
+
+    /**
+     * Returns the policy used to handle listener failures during notification.
+     */
+    public FailurePolicy failurePolicy () {
+        return _failurePolicy;
+    }
+
+    /**
+     * Configures the policy used to handle listener failures during notification. Defaults to
+     * {@link FailurePolicy#COLLECT}.
+     */
+    public void setFailurePolicy (FailurePolicy policy) {
+        if (policy == null) throw new NullPointerException("Null policy");
+        _failurePolicy = policy;
+    }
+
+    /**
+     * Returns the mode in which this reactor dispatches notifications.
+     */
+    public DispatchMode dispatchMode () {
+        return _mode;
+    }
+
+    /**
+     * Configures the mode in which this reactor dispatches notifications. This should be done
+     * before the reactor is shared between threads.
+     * @throws IllegalStateException if called while a notification is in progress.
+     */
+    public synchronized void setDispatchMode (DispatchMode mode) {
+        if (mode == null) throw new NullPointerException("Null mode");
+        if (_dispatching || _dispatcher != null) throw new IllegalStateException(
+            "Cannot change mode while notifying");
+        _mode = mode;
+        // concurrent notifications cannot share a propagation
+        if (mode == DispatchMode.CONCURRENT) _propagation = null;
     }
 
     /** Returns the listener to be used when a weakly held listener is discovered to have been
      * collected while dispatching. This listener should NOOP when signaled. */
     abstract L placeholderListener ();
 
-    protected synchronized Cons<L> addConnection (Object listener) {
+    protected Cons<L> addConnection (Object listener) {
         if (listener == null) throw new NullPointerException("Null listener");
         // listeners have the form Listener<T> (a type constructor) but here we treat them as a
         // plain type variable (L) and Java doesn't have the higher kinded type machinery needed to
@@ -35,67 +185,223 @@ public abstract class Reactor<L extends Reactor.RListener>
         return addCons(new Cons<L>(this, casted));
     }
 
-    protected synchronized Cons<L> addCons (final Cons<L> cons) {
-        if (isDispatching()) {
-            _pendingRuns = insert(_pendingRuns, new Runs() {
+    protected Cons<L> addCons (final Cons<L> cons) {
+        if (_mode == DispatchMode.CONCURRENT) {
+            Cons<L>[] lners;
+            do {
+                lners = _listeners;
+            } while (!Platform.compareAndSetListeners(this, lners, Cons.insert(lners, cons)));
+            synchronized (this) {
+                connectionAdded();
+            }
+            return cons;
+        }
+        synchronized (this) {
+            if (_dispatching) {
+                appendPending(new PendingOp<L>(cons, null, true));
+            } else {
+                _listeners = Cons.insert(_listeners, cons);
+                connectionAdded();
+            }
+        }
+        return cons;
+    }
+
+    /**
+     * Notifies all of our listeners, in priority order, by passing each of them (along with the
+     * supplied arguments) to {@code notifier}. Takes care of coordinating with concurrent and
+     * re-entrant notifications per our {@link DispatchMode}, of disconnecting one-shot connections,
+     * and of handling listener failures per our {@link FailurePolicy}.
+     *
+     * <p>Subclasses should pass a shared (static) notifier and unpack their event from the
+     * arguments, so that no allocation is needed to dispatch an event.</p>
+     */
+    protected void dispatch (Notifier notifier, Object a1, Object a2, Object a3) {
+        dispatch(notifier, a1, a2, a3, 0L, 0L);
+    }
+
+    /**
+     * Notifies all of our listeners of an event that carries primitive data, which is passed along
+     * (unboxed) to {@link Notifier#dispatch(Object,Object,Object,Object,long,long)}. Floating point
+     * data may be passed via {@link Double#doubleToLongBits}. See {@link
+     * #dispatch(Notifier,Object,Object,Object)}.
+     */
+    protected void dispatch (final Notifier notifier, final Object a1, final Object a2,
+                             final Object a3, final long p1, final long p2) {
+        Cons<L>[] lners = prepareNotify();
+        if (lners == null) {
+            queueNotify(new Runs() {
                 public void run () {
-                    _listeners = Cons.insert(_listeners, cons);
-                    connectionAdded();
+                    Reactor.this.dispatch(notifier, a1, a2, a3, p1, p2);
                 }
             });
-        } else {
-            _listeners = Cons.insert(_listeners, cons);
-            connectionAdded();
+            return;
         }
-        return cons;
+        MultiFailureException error = null;
+        try {
+            for (Cons<L> cons : lners) {
+                try {
+                    notifier.dispatch(cons.listener(), a1, a2, a3, p1, p2);
+                } catch (Throwable t) {
+                    error = _failurePolicy.onFailure(this, error, t);
+                } finally {
+                    if (cons.oneShot()) cons.disconnect();
+                }
+            }
+            // recompute any derived values queued by our listeners, in rank order
+            Propagation prop = _propagation;
+            if (prop != null && prop.root == this && prop.pending()) error = prop.drain(error);
+        } finally {
+            finishNotify();
+        }
+        if (error != null) error.trigger();
     }
 
-    protected synchronized Cons<L> prepareNotify () {
-        if (_listeners == DISPATCHING)
-            throw new IllegalStateException("Initiated notify while notifying");
-        Cons<L> lners = _listeners;
-        @SuppressWarnings("unchecked") Cons<L> sentinel = (Cons<L>)DISPATCHING;
-        _listeners = sentinel;
-        return lners;
+    /**
+     * Notes that a notification is in progress and returns the listeners to be notified, sorted by
+     * priority. The returned array is never mutated (connections made or broken during dispatch
+     * are applied to a copy in {@link #finishNotify}), so it may be iterated without holding our
+     * lock.
+     *
+     * @return the listeners to notify, or null if this reactor is in {@link DispatchMode#QUEUED}
+     * mode and another notification is in progress, in which case the caller must pass a runnable
+     * that reinitiates its notification to {@link #queueNotify}.
+     */
+    protected Cons<L>[] prepareNotify () {
+        if (_mode == DispatchMode.CONCURRENT) return _listeners;
+        synchronized (this) {
+            if (_mode == DispatchMode.QUEUED) {
+                // the thread that started dispatching proceeds with each queued notification in
+                // turn, everyone else (including that thread, while notifying) must queue
+                Object thread = Platform.currentThread();
+                if (_dispatcher == null) _dispatcher = thread;
+                else if (_dispatcher != thread || _dispatching) return null;
+            } else if (_dispatching) {
+                throw new IllegalStateException("Initiated notify while notifying");
+            }
+            _dispatching = true;
+            return _listeners;
+        }
     }
 
-    protected synchronized void finishNotify (Cons<L> lners) {
-        // note that we're no longer dispatching
-        _listeners = lners;
+    /**
+     * Notes that a notification has completed and applies any connections or disconnections that
+     * were requested while it was in progress. In {@link DispatchMode#QUEUED} mode, then
+     * dispatches any notifications that were queued while it was in progress.
+     */
+    protected void finishNotify () {
+        if (_mode == DispatchMode.CONCURRENT) return;
+        synchronized (this) {
+            // note that we're no longer dispatching
+            _dispatching = false;
+
+            // now apply, in a single pass, any connections or disconnections that were queued
+            if (_pendingOps != null) {
+                PendingOp<L> ops = _pendingOps;
+                _pendingOps = _pendingOpsTail = null;
+                boolean added = false, removed = false;
+                for (PendingOp<L> op = ops; op != null; op = op.next) {
+                    if (op.add) added = true;
+                    else removed = true;
+                }
+                _listeners = Cons.apply(_listeners, ops);
+                if (added) connectionAdded();
+                if (removed) connectionRemoved();
+            }
 
-        // now remove listeners any queued for removing and add any queued for adding
-        for (; _pendingRuns != null; _pendingRuns = _pendingRuns.next) {
-            _pendingRuns.run();
+            // if we're already draining queued notifications, our caller will continue to do so
+            if (_dispatcher == null || _draining) return;
+            if (_pendingNotifies == null) {
+                _dispatcher = null;
+                return;
+            }
+            _draining = true;
         }
-    }
 
-    protected synchronized void disconnect (final Cons<L> cons) {
-        if (isDispatching()) {
-            _pendingRuns = insert(_pendingRuns, new Runs() {
-                public void run () {
-                    _listeners = Cons.remove(_listeners, cons);
-                    connectionRemoved();
+        MultiFailureException error = null;
+        while (true) {
+            Runs notify;
+            synchronized (this) {
+                notify = _pendingNotifies;
+                if (notify == null) {
+                    _draining = false;
+                    _dispatcher = null;
+                    break;
                 }
-            });
-        } else {
-            _listeners = Cons.remove(_listeners, cons);
-            connectionRemoved();
+                _pendingNotifies = notify.next;
+                if (_pendingNotifies == null) _pendingNotifiesTail = null;
+            }
+            try {
+                notify.run();
+            } catch (Throwable t) {
+                if (error == null) error = new MultiFailureException();
+                error.addFailure(t);
+            }
+        }
+        if (error != null) error.trigger();
+    }
+
+    /**
+     * Queues a notification to be dispatched when the notification currently in progress
+     * completes. If that notification completed in the meanwhile, {@code notify} is run
+     * immediately.
+     * @param notify a runnable that reinitiates the notification that could not be prepared.
+     */
+    protected void queueNotify (Runs notify) {
+        synchronized (this) {
+            if (_dispatcher != null) {
+                if (_pendingNotifiesTail == null) _pendingNotifies = notify;
+                else _pendingNotifiesTail.next = notify;
+                _pendingNotifiesTail = notify;
+                return;
+            }
+        }
+        notify.run();
+    }
+
+    protected void disconnect (final Cons<L> cons) {
+        if (_mode == DispatchMode.CONCURRENT) {
+            Cons<L>[] lners, nlners;
+            do {
+                lners = _listeners;
+                nlners = Cons.remove(lners, cons);
+            } while (nlners != lners && !Platform.compareAndSetListeners(this, lners, nlners));
+            synchronized (this) {
+                connectionRemoved();
+            }
+            return;
+        }
+        synchronized (this) {
+            if (_dispatching) {
+                appendPending(new PendingOp<L>(cons, null, false));
+            } else {
+                _listeners = Cons.remove(_listeners, cons);
+                connectionRemoved();
+            }
         }
     }
 
-    protected synchronized void removeConnection (Object listener) {
+    protected void removeConnection (Object listener) {
         // see addConnection for details on why this cast is safe
         @SuppressWarnings("unchecked") final L casted = (L)listener;
-        if (isDispatching()) {
-            _pendingRuns = insert(_pendingRuns, new Runs() {
-                public void run () {
-                    _listeners = Cons.removeAll(_listeners, casted);
-                    connectionRemoved();
-                }
-            });
-        } else {
-            _listeners = Cons.removeAll(_listeners, casted);
-            connectionRemoved();
+        if (_mode == DispatchMode.CONCURRENT) {
+            Cons<L>[] lners, nlners;
+            do {
+                lners = _listeners;
+                nlners = Cons.removeAll(lners, casted);
+            } while (nlners != lners && !Platform.compareAndSetListeners(this, lners, nlners));
+            synchronized (this) {
+                connectionRemoved();
+            }
+            return;
+        }
+        synchronized (this) {
+            if (_dispatching) {
+                appendPending(new PendingOp<L>(null, casted, false));
+            } else {
+                _listeners = Cons.removeAll(_listeners, casted);
+                connectionRemoved();
+            }
         }
     }
 
@@ -114,6 +420,14 @@ public abstract class Reactor<L extends Reactor.RListener>
         // noop
     }
 
+    /**
+     * Notifies our listeners of the changes deferred since we were queued to be flushed by our
+     * scheduler. See {@link ReactScheduler}.
+     */
+    protected void flushDeferred () {
+        // noop
+    }
+
     /**
      * Called when a connection has been added to this reactor.
      */
@@ -128,23 +442,86 @@ public abstract class Reactor<L extends Reactor.RListener>
         // noop
     }
 
-    protected static Runs insert (Runs head, Runs action) {
-        if (head == null) return action;
-        head.next = insert(head.next, action);
-        return head;
+    /**
+     * Appends a connection change to be applied when the current notification completes. Must be
+     * called while holding our lock.
+     */
+    protected void appendPending (PendingOp<L> op) {
+        if (_pendingOpsTail == null) _pendingOps = op;
+        else _pendingOpsTail.next = op;
+        _pendingOpsTail = op;
     }
 
-    // always called while lock is held on this reactor
-    private final boolean isDispatching () {
-        return _listeners == DISPATCHING;
-    }
+    /** Our connections, sorted by priority. This array is copied on write, never mutated. */
+    protected volatile Cons<L>[] _listeners = Cons.emptyList();
+
+    /** Connection changes requested while dispatching, in the order they were requested. These are
+     * applied to {@link #_listeners} in a single batch by {@link #finishNotify}. */
+    protected PendingOp<L> _pendingOps, _pendingOpsTail;
+
+    /** Whether we are currently notifying our listeners. Only accessed while holding our lock, and
+     * never set in {@link DispatchMode#CONCURRENT} mode. */
+    protected boolean _dispatching;
+
+    /** Notifications queued while dispatching in {@link DispatchMode#QUEUED} mode. */
+    protected Runs _pendingNotifies, _pendingNotifiesTail;
+
+    /** Identifies the thread dispatching (and draining queued notifications) in {@link
+     * DispatchMode#QUEUED} mode, or null. */
+    protected Object _dispatcher;
 
-    protected Cons<L> _listeners;
-    protected Runs _pendingRuns;
+    /** Whether {@link #_dispatcher} is currently draining queued notifications. */
+    protected boolean _draining;
+
+    /** Handles listener failures during notification. */
+    protected FailurePolicy _failurePolicy = FailurePolicy.COLLECT;
+
+    /** The mode in which we dispatch notifications. */
+    protected volatile DispatchMode _mode = DispatchMode.SERIAL;
+
+    /** The propagation in which our changes are delivered to derived values: our own (created on
+     * demand), or that of our source, if we are a derived value. See {@link Propagation}. */
+    Propagation _propagation;
+
+    /** The scheduler to which our notifications are deferred, or null. See {@link
+     * ReactScheduler}. */
+    ReactScheduler _scheduler;
+
+    /** Whether we are queued to be flushed by a scheduler, and the next reactor so queued. */
+    boolean _deferred;
+    Reactor<?> _nextDeferred;
+
+    /** Applies an event to a single listener. See {@link Reactor#dispatch}. */
+    protected static abstract class Notifier {
+        public abstract void dispatch (Object lner, Object a1, Object a2, Object a3);
+
+        /** Applies an event with primitive data to a single listener. Notifiers for events that
+         * carry primitive data must override this method; the default ignores that data. */
+        public void dispatch (Object lner, Object a1, Object a2, Object a3, long p1, long p2) {
+            dispatch(lner, a1, a2, a3);
+        }
+    }
 
     protected static abstract class Runs implements Runnable {
         public Runs next;
     }
 
-    protected static final Cons<RListener> DISPATCHING = new Cons<RListener>(null, null);
+    /** A connection change requested while dispatching. */
+    protected static final class PendingOp<L extends RListener> {
+        /** The connection to be added or removed, or null if all connections to {@link #listener}
+         * are to be removed. */
+        public final Cons<L> cons;
+        /** The listener whose connections are to be removed, if {@link #cons} is null. */
+        public final L listener;
+        /** Whether {@link #cons} is to be added (rather than removed). */
+        public final boolean add;
+        /** The next change in the queue. */
+        public PendingOp<L> next;
+
+        public PendingOp (Cons<L> cons, L listener, boolean add) {
+            this.cons = cons;
+            this.listener = listener;
+            this.add = add;
+        }
+    }
 }
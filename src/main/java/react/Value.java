@@ -56,6 +56,7 @@ public class Value<T> extends AbstractValue<T>
     }
 
     @Override public T get () {
+        noteRead();
         return _value;
     }
 
@@ -65,5 +66,9 @@ public class Value<T> extends AbstractValue<T>
         return oldValue;
     }
 
+    /**
+     * The current value. Subclasses that store their value unboxed, such as {@link IntValue},
+     * leave this null.
+     */
     protected T _value;
 }
@@ -33,7 +33,8 @@ public interface ValueView<T>
      * Creates a value that maps this value via a function. When this value changes, the mapped
      * listeners will be notified, regardless of whether the new and old mapped values differ. The
      * mapped value will retain a connection to this value for as long as it has connections of its
-     * own.
+     * own. Mapped values are notified in dependency order: a value derived from several values
+     * which share a source is notified once per change to that source, after all of them.
      */
     <M> ValueView<M> map (final Function<? super T, M> func);
 
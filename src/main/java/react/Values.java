@@ -23,6 +23,7 @@ public class Values
     public static ValueView<Boolean> toggler (final SignalView<?> signal, final boolean initial) {
         return new MappedValue<Boolean>() {
             @Override public Boolean get () {
+                noteRead();
                 return _current;
             }
             @Override protected Connection connect () {
@@ -60,10 +61,10 @@ public class Values
     }
 
     /**
-     * Returns a value which is the logical AND of the supplied values.
+     * Returns a value which is the logical AND of the supplied values. See {@link #all}.
      */
-    public static ValueView<Boolean> and (final Iterable<? extends ValueView<Boolean>> values) {
-        return aggValue(values, COMPUTE_AND);
+    public static ValueView<Boolean> and (Iterable<? extends ValueView<Boolean>> values) {
+        return all(values);
     }
 
     /**
@@ -82,10 +83,60 @@ public class Values
     }
 
     /**
-     * Returns a value which is the logical OR of the supplied values.
+     * Returns a value which is the logical OR of the supplied values. See {@link #any}.
+     */
+    public static ValueView<Boolean> or (Iterable<? extends ValueView<Boolean>> values) {
+        return any(values);
+    }
+
+    /**
+     * Returns a value which is the number of the supplied values that are true. While the count
+     * has connections, it is maintained incrementally: a change to one input costs O(1),
+     * regardless of the number of inputs. A null input is treated as false.
+     */
+    public static ValueView<Integer> count (Iterable<? extends ValueView<Boolean>> values) {
+        return new Counted<Integer>(values) {
+            @Override protected Integer result (int trues, int size) {
+                return trues;
+            }
+        };
+    }
+
+    /**
+     * Returns a value which is true if any of the supplied values are true. Maintained
+     * incrementally like {@link #count}, and changes only when the result flips.
+     */
+    public static ValueView<Boolean> any (Iterable<? extends ValueView<Boolean>> values) {
+        return new Counted<Boolean>(values) {
+            @Override protected Boolean result (int trues, int size) {
+                return trues > 0;
+            }
+        };
+    }
+
+    /**
+     * Returns a value which is true if all of the supplied values are true (or there are no
+     * values). Maintained incrementally like {@link #count}, and changes only when the result
+     * flips.
      */
-    public static ValueView<Boolean> or (final Iterable<? extends ValueView<Boolean>> values) {
-        return aggValue(values, COMPUTE_OR);
+    public static ValueView<Boolean> all (Iterable<? extends ValueView<Boolean>> values) {
+        return new Counted<Boolean>(values) {
+            @Override protected Boolean result (int trues, int size) {
+                return trues == size;
+            }
+        };
+    }
+
+    /**
+     * Returns a value which is true if none of the supplied values are true. Maintained
+     * incrementally like {@link #count}, and changes only when the result flips.
+     */
+    public static ValueView<Boolean> none (Iterable<? extends ValueView<Boolean>> values) {
+        return new Counted<Boolean>(values) {
+            @Override protected Boolean result (int trues, int size) {
+                return trues == 0;
+            }
+        };
     }
 
     /**
@@ -95,6 +146,7 @@ public class Values
     public static <T> ValueView<T> asValue (final SignalView<T> signal, final T initial) {
         return new MappedValue<T>() {
             @Override public T get () {
+                noteRead();
                 return _value;
             }
             @Override protected T updateLocal (T value) {
@@ -113,69 +165,99 @@ public class Values
         };
     }
 
-    protected static final ValueView<Boolean> aggValue (
-        final Iterable<? extends ValueView<Boolean>> values,
-        final Function<Iterable<? extends ValueView<Boolean>>,Boolean> aggOp) {
+    /**
+     * Plumbing for aggregates over boolean values. While connected, the aggregate tracks the
+     * number of its inputs that are true, adjusting it by the delta of each input change, and
+     * notifies (once all inputs affected by a change have been updated) only when its result
+     * changes. While disconnected, {@link #get} examines every input.
+     */
+    protected static abstract class Counted<T> extends MappedValue<T> {
+        public Counted (Iterable<? extends ValueView<Boolean>> values) {
+            _values = values;
+        }
 
-        return new MappedValue<Boolean>() {
-            @Override public Boolean get () {
-                return aggOp.apply(values);
+        @Override public T get () {
+            noteRead();
+            if (_conn != null) return result(_trues, _size);
+            int trues = 0, size = 0;
+            Computed<?> computed = Computed.suspend();
+            try {
+                for (ValueView<Boolean> value : _values) {
+                    if (isTrue(value.get())) trues++;
+                    size++;
+                }
+            } finally {
+                Computed.resume(computed);
             }
+            return result(trues, size);
+        }
 
-            @Override protected Connection connect () {
-                final List<Connection> conns = new ArrayList<Connection>();
-                for (ValueView<Boolean> value : values) {
-                    conns.add(value.connect(_trigger));
-                }
-                return new Connection() {
-                    public void disconnect () {
-                        for (Connection conn : conns) conn.disconnect();
-                    }
-                    public Connection once () {
-                        for (Connection conn : conns) conn.once();
-                        return this;
-                    }
-                    public Connection atPriority (int priority) {
-                        for (Connection conn : conns) conn.atPriority(priority);
-                        return this;
-                    }
-                    public Connection holdWeakly() {
-                        for (Connection conn : conns) conn.holdWeakly();
-                        return this;
+        /** Computes the result of this aggregate given the number of true inputs. */
+        protected abstract T result (int trues, int size);
+
+        @Override protected Connection connect () {
+            _trues = _size = 0;
+            final List<Connection> conns = new ArrayList<Connection>();
+            int rank = 0;
+            for (final ValueView<Boolean> value : _values) {
+                if (isTrue(value.get())) _trues++;
+                _size++;
+                conns.add(value.connect(new SourceListener<Boolean>() {
+                    public void onChange (Boolean nvalue, Boolean ovalue) {
+                        inputChanged(value, nvalue, ovalue);
                     }
-                };
+                }));
+                rank = Math.max(rank, rankOf(value));
             }
-
-            protected final UnitSlot _trigger = new UnitSlot() {
-                public void onEmit () {
-                    boolean ovalue = _current;
-                    _current = aggOp.apply(values);
-                    notifyChange(_current, ovalue);
+            _rank = rank + 1;
+            return new Connection() {
+                public void disconnect () {
+                    for (Connection conn : conns) conn.disconnect();
+                }
+                public Connection once () {
+                    for (Connection conn : conns) conn.once();
+                    return this;
+                }
+                public Connection atPriority (int priority) {
+                    for (Connection conn : conns) conn.atPriority(priority);
+                    return this;
+                }
+                public Connection holdWeakly() {
+                    for (Connection conn : conns) conn.holdWeakly();
+                    return this;
                 }
-                protected boolean _current = aggOp.apply(values);
             };
-        };
-    }
+        }
 
-    protected static final Function<Iterable<? extends ValueView<Boolean>>,Boolean> COMPUTE_AND =
-        new Function<Iterable<? extends ValueView<Boolean>>,Boolean>() {
-            public Boolean apply (Iterable<? extends ValueView<Boolean>> values) {
-                for (ValueView<Boolean> value : values) {
-                    if (!value.get()) return false;
-                }
-                return true;
+        /** Adjusts our count per a change to {@code input}, and queues a propagation. */
+        protected void inputChanged (ValueView<Boolean> input, Boolean value, Boolean ovalue) {
+            int delta = (isTrue(value) ? 1 : 0) - (isTrue(ovalue) ? 1 : 0);
+            if (delta == 0) return; // forced update, or null to false (or vice versa)
+            if (!_changed) {
+                _changed = true;
+                _oresult = result(_trues, _size);
             }
-        };
+            _trues += delta;
+            sourceChanged(input);
+        }
 
-    protected static final Function<Iterable<? extends ValueView<Boolean>>,Boolean> COMPUTE_OR =
-        new Function<Iterable<? extends ValueView<Boolean>>,Boolean>() {
-            public Boolean apply (Iterable<? extends ValueView<Boolean>> values) {
-                for (ValueView<Boolean> value : values) {
-                    if (value.get()) return true;
-                }
-                return false;
-            }
-        };
+        @Override protected void propagate () {
+            T oresult = _oresult, result = result(_trues, _size);
+            _oresult = null;
+            _changed = false;
+            if (!result.equals(oresult)) notifyChange(result, oresult);
+        }
+
+        protected final Iterable<? extends ValueView<Boolean>> _values;
+        protected int _trues, _size;
+        /** Our result before the first input change since we last propagated. */
+        protected T _oresult;
+        protected boolean _changed;
+    }
+
+    protected static boolean isTrue (Boolean value) {
+        return value != null && value;
+    }
 
     private Values () {} // no constructski
 }
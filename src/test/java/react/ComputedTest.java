@@ -0,0 +1,163 @@
+//
+// React - a library for functional-reactive-like programming in Java
+// Copyright (c) 2011, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/react/blob/master/LICENSE
+
+package react;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests aspects of the {@link Computed} class.
+ */
+public class ComputedTest
+{
+    @Test public void testBasics () {
+        final Value<Integer> a = Value.create(1), b = Value.create(2);
+        final int[] computes = new int[1];
+        Computed<Integer> sum = new Computed<Integer>() {
+            protected Integer compute () {
+                computes[0]++;
+                return a.get() + b.get();
+            }
+        };
+        // while disconnected, we're evaluated on demand
+        assertEquals(3, sum.get().intValue());
+        assertEquals(1, computes[0]);
+        assertFalse(a.hasConnections());
+
+        // once connected, we depend on what we read and cache our value
+        final List<Integer> values = new ArrayList<Integer>();
+        Connection conn = sum.connect(new Value.Listener<Integer>() {
+            public void onChange (Integer value, Integer ovalue) {
+                values.add(value);
+            }
+        });
+        assertTrue(a.hasConnections());
+        assertTrue(b.hasConnections());
+        computes[0] = 0;
+        assertEquals(3, sum.get().intValue());
+        assertEquals(0, computes[0]);
+
+        a.update(5);
+        assertEquals(Arrays.asList(7), values);
+        assertEquals(7, sum.get().intValue());
+        assertEquals(1, computes[0]);
+
+        // we're re-evaluated on a forced update, but an equal result is not notified
+        a.updateForce(5);
+        assertEquals(2, computes[0]);
+        assertEquals(Arrays.asList(7), values);
+
+        // disconnecting from the computed value disconnects it from its dependencies
+        conn.disconnect();
+        assertFalse(a.hasConnections());
+        assertFalse(b.hasConnections());
+    }
+
+    @Test public void testDynamicDependencies () {
+        final Value<Boolean> useA = Value.create(true);
+        final Value<String> a = Value.create("a"), b = Value.create("b");
+        final int[] computes = new int[1];
+        Computed<String> pick = new Computed<String>() {
+            protected String compute () {
+                computes[0]++;
+                return useA.get() ? a.get() : b.get();
+            }
+        };
+        SignalTest.Counter counter = new SignalTest.Counter();
+        pick.connect(counter);
+        assertTrue(a.hasConnections());
+        assertFalse(b.hasConnections());
+
+        // changes to values we did not read are ignored
+        computes[0] = 0;
+        b.update("bb");
+        assertEquals(0, computes[0]);
+        assertEquals(0, counter.notifies);
+
+        // when we read other values, our dependencies change accordingly
+        useA.update(false);
+        assertEquals("bb", pick.get());
+        assertEquals(1, counter.notifies);
+        assertFalse(a.hasConnections());
+        assertTrue(b.hasConnections());
+        a.update("aa");
+        assertEquals(1, computes[0]);
+        b.update("bbb");
+        assertEquals("bbb", pick.get());
+        assertEquals(2, counter.notifies);
+    }
+
+    @Test public void testNestedAndGlitchFree () {
+        final Value<Integer> a = Value.create(1);
+        final ValueView<Integer> doubled = a.map(new Function<Integer,Integer>() {
+            public Integer apply (Integer value) {
+                return value * 2;
+            }
+        });
+        final Computed<Integer> tripled = new Computed<Integer>() {
+            protected Integer compute () {
+                return a.get() * 3;
+            }
+        };
+        // depends on a (directly), doubled and tripled: must see them all updated together
+        final List<String> seen = new ArrayList<String>();
+        Computed<String> all = new Computed<String>() {
+            protected String compute () {
+                String value = a.get() + ":" + doubled.get() + ":" + tripled.get();
+                seen.add(value);
+                return value;
+            }
+        };
+        all.connect(new SignalTest.Counter());
+        assertTrue(tripled.hasConnections());
+        seen.clear();
+
+        a.update(2);
+        assertEquals(Arrays.asList("2:4:6"), seen);
+        assertEquals("2:4:6", all.get());
+    }
+
+    @Test public void testDeepenedDiamond () {
+        final Value<Integer> a = Value.create(1);
+        final Value<Boolean> deep = Value.create(false);
+        Function<Integer,Integer> inc = new Function<Integer,Integer>() {
+            public Integer apply (Integer value) {
+                return value + 1;
+            }
+        };
+        final ValueView<Integer> chain = a.map(inc).map(inc).map(inc);
+        final Computed<Integer> pick = new Computed<Integer>() {
+            protected Integer compute () {
+                return deep.get() ? chain.get() - 3 : a.get();
+            }
+        };
+        // depends on a and pick, which is at first ranked just above a
+        final List<String> seen = new ArrayList<String>();
+        Computed<String> both = new Computed<String>() {
+            protected String compute () {
+                String value = a.get() + ":" + pick.get();
+                seen.add(value);
+                return value;
+            }
+        };
+        both.connect(new SignalTest.Counter());
+        a.update(2);
+        assertEquals(Arrays.asList("1:1", "2:2"), seen);
+
+        // pick now depends on the chain, but its value is unchanged, so both is not recomputed;
+        // nonetheless both must now be recomputed after pick, and so only once per change
+        deep.update(true);
+        assertEquals(Arrays.asList("1:1", "2:2"), seen);
+        seen.clear();
+        a.update(3);
+        assertEquals(Arrays.asList("3:3"), seen);
+        assertEquals("3:3", both.get());
+    }
+}
@@ -5,6 +5,9 @@
 
 package react;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.ListIterator;
 
 import react.RList;
@@ -112,6 +115,207 @@ public class RListTest
         assertEquals(2, list.size());
     }
 
+    @Test public void testRanges () {
+        RList<String> list = RList.create();
+        Counter counter = new Counter();
+        list.connect(counter);
+        final List<String> events = new ArrayList<String>();
+        list.connect(new RList.Listener<String>() {
+            @Override public void onAddRange (int index, List<String> elems) {
+                events.add("add " + index + " " + elems);
+            }
+            @Override public void onSetRange (int index, List<String> nelems, List<String> oelems) {
+                events.add("set " + index + " " + nelems + " " + oelems);
+            }
+            @Override public void onRemoveRange (int index, List<String> elems) {
+                events.add("remove " + index + " " + elems);
+            }
+        });
+        // per-element listeners see each element, as if added one at a time
+        final List<String> adds = new ArrayList<String>();
+        list.connect(new RList.Listener<String>() {
+            @Override public void onAdd (int index, String elem) {
+                adds.add(index + elem);
+            }
+        });
+
+        list.addAll(Arrays.asList("d", "b", "e"));
+        list.addAll(1, Arrays.asList("a", "c"));
+        assertEquals(Arrays.asList("d", "a", "c", "b", "e"), list);
+        assertEquals(Arrays.asList("0d", "1b", "2e", "1a", "2c"), adds);
+        assertEquals(5, counter.notifies);
+
+        list.sort(null);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), list);
+        list.sort(null); // already sorted, no event
+
+        list.removeRange(1, 3);
+        assertEquals(Arrays.asList("a", "d", "e"), list);
+
+        list.setAll(Arrays.asList("x", "d"));
+        assertEquals(Arrays.asList("x", "d"), list);
+
+        list.clear();
+        assertTrue(list.isEmpty());
+        list.clear(); // already empty, no event
+
+        assertEquals(Arrays.asList(
+                         "add 0 [d, b, e]", "add 1 [a, c]",
+                         "set 0 [a, b, c, d] [d, a, c, b]",
+                         "remove 1 [b, c]",
+                         "set 0 [x, d] [a, d]", "remove 2 [e]",
+                         "remove 0 [x, d]"), events);
+        // 5 adds, 4 sets, 2 removes, 2 sets, 1 remove, 2 removes
+        assertEquals(16, counter.notifies);
+    }
+
+    @Test public void testRangeHooks () {
+        final List<String> emitted = new ArrayList<String>();
+        RList<String> list = new RList<String>(new ArrayList<String>()) {
+            @Override protected void emitAdd (int index, String elem) {
+                emitted.add("+" + index + elem);
+                super.emitAdd(index, elem);
+            }
+            @Override protected void emitSet (int index, String newElem, String oldElem) {
+                emitted.add("=" + index + newElem);
+                super.emitSet(index, newElem, oldElem);
+            }
+            @Override protected void emitRemove (int index, String elem) {
+                emitted.add("-" + index + elem);
+                super.emitRemove(index, elem);
+            }
+        };
+        final List<String> events = new ArrayList<String>();
+        list.connect(new RList.Listener<String>() {
+            @Override public void onAddRange (int index, List<String> elems) {
+                events.add("add " + index + " " + elems);
+            }
+            @Override public void onSetRange (int index, List<String> nelems, List<String> oelems) {
+                events.add("set " + index + " " + nelems + " " + oelems);
+            }
+            @Override public void onRemoveRange (int index, List<String> elems) {
+                events.add("remove " + index + " " + elems);
+            }
+        });
+
+        // range operations pass each element through the hooks, yet emit a single range event
+        list.addAll(Arrays.asList("c", "a", "b"));
+        list.sort(null);
+        list.removeRange(0, 2);
+        list.clear();
+        assertEquals(Arrays.asList("+0c", "+1a", "+2b", "=0a", "=1b", "=2c",
+                                   "-0a", "-0b", "-0c"), emitted);
+        assertEquals(Arrays.asList("add 0 [c, a, b]", "set 0 [a, b, c] [c, a, b]",
+                                   "remove 0 [a, b]", "remove 0 [c]"), events);
+    }
+
+    @Test public void testIndexed () {
+        RList<String> list = RList.createIndexed();
+        assertTrue(list.isIndexed());
+        list.addAll(Arrays.asList("a", "b", "a", "c"));
+        assertTrue(list.contains("a"));
+        assertFalse(list.contains("d"));
+        assertEquals(-1, list.indexOf("d"));
+        assertEquals(2, list.lastIndexOf("a"));
+
+        // the index tracks duplicates and every means of mutation
+        list.remove("a");
+        assertTrue(list.contains("a"));
+        list.set(1, "d");
+        assertFalse(list.contains("a"));
+        assertTrue(list.contains("d"));
+        ListIterator<String> iter = list.listIterator();
+        iter.next();
+        iter.remove();
+        iter.add("e");
+        assertEquals(Arrays.asList("e", "d", "c"), list);
+        assertFalse(list.contains("b"));
+        assertTrue(list.containsAll(Arrays.asList("c", "e")));
+        assertFalse(list.remove("b"));
+        list.clear();
+        assertFalse(list.contains("e"));
+
+        try {
+            list.add("x");
+            list.subList(0, 1).clear();
+            fail();
+        } catch (UnsupportedOperationException uoe) {
+            // expected
+        }
+    }
+
+    @Test public void testRemoveAll () {
+        for (RList<String> list : Arrays.asList(RList.<String>create(),
+                                                RList.<String>createIndexed())) {
+            list.addAll(Arrays.asList("a", "b", "a", "c", "d", "b", "e"));
+            final List<String> removes = new ArrayList<String>();
+            list.connect(new RList.Listener<String>() {
+                @Override public void onRemove (int index, String elem) {
+                    removes.add(index + elem);
+                }
+            });
+            // removes every occurrence, reporting indices as if removed one at a time
+            assertTrue(list.removeAll(Arrays.asList("a", "b")));
+            assertEquals(Arrays.asList("c", "d", "e"), list);
+            assertEquals(Arrays.asList("0a", "0b", "0a", "2b"), removes);
+            assertFalse(list.contains("a"));
+            assertFalse(list.removeAll(Arrays.asList("a", "b")));
+
+            removes.clear();
+            assertTrue(list.retainAll(Arrays.asList("d")));
+            assertEquals(Arrays.asList("d"), list);
+            assertEquals(Arrays.asList("0c", "1e"), removes);
+            assertFalse(list.contains("c"));
+        }
+    }
+
+    @Test public void testScheduler () {
+        ReactScheduler tick = new ReactScheduler();
+        RList<String> list = RList.create();
+        list.addAll(Arrays.asList("a", "b", "c"));
+        list.setScheduler(tick);
+        final List<String> events = new ArrayList<String>();
+        list.connect(new RList.Listener<String>() {
+            @Override public void onAdd (int index, String elem) {
+                events.add("+" + index + elem);
+            }
+            @Override public void onSet (int index, String newElem, String oldElem) {
+                events.add(index + oldElem + newElem);
+            }
+            @Override public void onRemove (int index, String elem) {
+                events.add("-" + index + elem);
+            }
+        });
+        // a second reactor, changed later, is flushed after the list
+        Value<String> value = Value.create("x");
+        value.setScheduler(tick);
+        value.connect(new Value.Listener<String>() {
+            public void onChange (String nvalue, String ovalue) {
+                events.add(ovalue + "=>" + nvalue);
+            }
+        });
+
+        // successive updates to an index are combined, and events are otherwise kept in order
+        list.set(0, "A");
+        value.update("y");
+        list.set(1, "B");
+        list.set(0, "AA");
+        list.add("d");
+        list.set(0, "AAA");
+        list.set(2, "C");
+        list.set(2, "c"); // back to its old element, so not delivered
+        assertTrue(events.isEmpty());
+        tick.flush();
+        assertEquals(Arrays.asList("0aAA", "1bB", "+3d", "0AAAAA", "x=>y"), events);
+
+        // ranges are copied, so later changes don't leak into them
+        events.clear();
+        list.removeAll(Arrays.asList("B", "d"));
+        list.add(1, "e");
+        tick.flush();
+        assertEquals(Arrays.asList("-1B", "-2d", "+1e"), events);
+    }
+
     @Test public void testSizeView () {
         RList<String> list = RList.create();
         list.add("one");
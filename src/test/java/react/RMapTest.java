@@ -5,9 +5,13 @@
 
 package react;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -300,6 +304,45 @@ public class RMapTest
         assertEquals(3, counter.notifies);
     }
 
+    @Test public void testKeyedViews () {
+        RMap<Integer,String> map = RMap.create(new HashMap<Integer,String>());
+        SignalTest.Counter counter = new SignalTest.Counter();
+        List<Connection> conns = new ArrayList<Connection>();
+        for (int ii = 0; ii < 1000; ii++) {
+            conns.add(map.getView(ii).connect(counter));
+            conns.add(map.containsKeyView(ii).connect(counter));
+        }
+        // a single listener routes changes to all of the views
+        assertEquals(1, map._listeners.length);
+
+        // connected views are shared, and only the views for the changed key are notified
+        ValueView<String> view = map.getView(5);
+        assertSame(view, map.getView(5));
+        final List<String> values = new ArrayList<String>();
+        Connection vconn = view.connect(new Slot<String>() {
+            public void onEmit (String value) {
+                values.add(value);
+            }
+        });
+        map.put(5, "five");
+        map.put(6, "six");
+        map.put(5, "cinq");
+        map.remove(5);
+        assertEquals(Arrays.asList("five", "cinq", null), values);
+        // 4 changes: 4 getView notifications, 3 containsKeyView notifications
+        assertEquals(7, counter.notifies);
+
+        // batched changes are routed as well
+        map.putAll(Collections.singletonMap(5, "V"));
+        assertEquals("V", values.get(3));
+
+        // once all views are disconnected, so is the router
+        for (Connection conn : conns) conn.disconnect();
+        assertTrue(map.hasConnections());
+        vconn.disconnect();
+        assertFalse(map.hasConnections());
+    }
+
     @Test public void testEntrySetIteratorEdgeCase () {
         RMap<Integer,String> map = RMap.create(new HashMap<Integer,String>());
         map.put(1, "one");
@@ -320,6 +363,122 @@ public class RMapTest
         }
     }
 
+    @Test public void testBatch () {
+        RMap<Integer,String> map = RMap.create(new HashMap<Integer,String>());
+        map.put(1, "one");
+        Counter counter = new Counter();
+        map.connect(counter);
+        final List<String> batches = new ArrayList<String>();
+        map.connect(new RMap.Listener<Integer,String>() {
+            @Override public void onChanges (RMap.ChangeSet<Integer,String> changes) {
+                batches.add(changes.toString());
+                assertEquals(Integer.valueOf(1), changes.key(0));
+                assertEquals("one", changes.oldValue(0));
+                assertFalse(changes.isRemove(0));
+                assertTrue(changes.isRemove(2));
+                assertNull(changes.value(2));
+            }
+        });
+
+        map.startBatch();
+        try {
+            map.put(1, "uno");
+            map.startBatch(); // nested batches are delivered with the outermost
+            map.put(2, "two");
+            map.commitBatch();
+            map.remove(1);
+            map.put(3, "three");
+            map.put(3, "three"); // unchanged, so not recorded
+            assertTrue(batches.isEmpty());
+            assertEquals(0, counter.notifies);
+        } finally {
+            map.commitBatch();
+        }
+        assertEquals(Arrays.asList("ChangeSet[1=uno, 2=two, -1, 3=three]"), batches);
+        // per-key listeners get the expanded callbacks
+        assertEquals(4, counter.notifies);
+
+        // empty batches are not dispatched
+        map.startBatch();
+        map.commitBatch();
+        assertEquals(1, batches.size());
+        try {
+            map.commitBatch();
+            fail();
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+    }
+
+    @Test public void testBatchedPutAllClear () {
+        RMap<Integer,String> map = RMap.create(new HashMap<Integer,String>());
+        final int[] batches = new int[1];
+        map.connect(new RMap.Listener<Integer,String>() {
+            @Override public void onChanges (RMap.ChangeSet<Integer,String> changes) {
+                batches[0]++;
+            }
+        });
+        Counter counter = new Counter();
+        map.connect(counter);
+        ValueView<Integer> size = map.sizeView();
+        SignalTest.Counter sizeChanges = new SignalTest.Counter();
+        size.connect(sizeChanges);
+
+        Map<Integer,String> snapshot = new HashMap<Integer,String>();
+        for (int ii = 0; ii < 100; ii++) snapshot.put(ii, "v" + ii);
+        map.putAll(snapshot);
+        assertEquals(1, batches[0]);
+        assertEquals(100, counter.notifies);
+        assertEquals(1, sizeChanges.notifies);
+        assertEquals(100, size.get().intValue());
+
+        map.clear();
+        assertEquals(2, batches[0]);
+        assertEquals(200, counter.notifies);
+        assertEquals(2, sizeChanges.notifies);
+        assertEquals(0, size.get().intValue());
+    }
+
+    @Test public void testScheduler () {
+        ReactScheduler tick = new ReactScheduler();
+        RMap<Integer,String> map = RMap.create(new HashMap<Integer,String>());
+        map.put(1, "one");
+        map.put(2, "two");
+        map.setScheduler(tick);
+        final List<String> batches = new ArrayList<String>();
+        map.connect(new RMap.Listener<Integer,String>() {
+            @Override public void onChanges (RMap.ChangeSet<Integer,String> changes) {
+                batches.add(changes.toString());
+            }
+        });
+        ValueView<String> view = map.getView(3);
+        SignalTest.Counter viewChanges = new SignalTest.Counter();
+        view.connect(viewChanges);
+
+        // changes to the same key are coalesced into the net change, ordered by first change
+        map.put(3, "three");
+        map.put(1, "uno");
+        map.put(3, "tres");
+        map.remove(2);
+        map.put(2, "two"); // restored, so no change
+        map.put(4, "four");
+        map.remove(4); // added and removed, so no change
+        assertTrue(batches.isEmpty());
+        assertEquals(0, viewChanges.notifies);
+        tick.flush();
+        assertEquals(Arrays.asList("ChangeSet[3=tres, 1=uno]"), batches);
+        assertEquals(1, viewChanges.notifies);
+        assertEquals("tres", view.get());
+
+        // batch operations are deferred likewise
+        map.clear();
+        map.put(5, "five");
+        tick.flush();
+        assertEquals("ChangeSet[-1, -2, -3, 5=five]", batches.get(1));
+        tick.flush();
+        assertEquals(2, batches.size());
+    }
+
     @Test public void testSizeView () {
         RMap<String,Integer> map = RMap.create();
         map.put("one", 1);
@@ -5,9 +5,14 @@
 
 package react;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -138,6 +143,184 @@ public class RSetTest
         assertEquals(4, counter.notifies);
     }
 
+    @Test public void testElementViews () {
+        RSet<Integer> set = RSet.create(new HashSet<Integer>());
+        SignalTest.Counter counter = new SignalTest.Counter();
+        List<Connection> conns = new ArrayList<Connection>();
+        for (int ii = 0; ii < 1000; ii++) conns.add(set.containsView(ii).connect(counter));
+        // a single listener routes changes to all of the views
+        assertEquals(1, set._listeners.length);
+
+        // connected views are shared, and only the views for the changed element are notified
+        ValueView<Boolean> view = set.containsView(5);
+        assertSame(view, set.containsView(5));
+        final List<Boolean> values = new ArrayList<Boolean>();
+        Connection vconn = view.connect(new Slot<Boolean>() {
+            public void onEmit (Boolean value) {
+                values.add(value);
+            }
+        });
+        set.add(5);
+        set.add(6);
+        set.remove(5);
+        assertEquals(Arrays.asList(true, false), values);
+        assertEquals(3, counter.notifies);
+
+        // bulk changes are routed as well, both small and larger than the index
+        set.addAll(Arrays.asList(5, 7));
+        assertEquals(Arrays.asList(true, false, true), values);
+        assertEquals(5, counter.notifies);
+        List<Integer> many = new ArrayList<Integer>();
+        for (int ii = 0; ii < 5000; ii++) many.add(ii);
+        set.setAll(many);
+        // 997 views gain their element (5, 6 and 7 were already present)
+        assertEquals(5 + 997, counter.notifies);
+        set.clear();
+        assertEquals(Arrays.asList(true, false, true, false), values);
+        assertEquals(5 + 997 + 1000, counter.notifies);
+
+        // once all views are disconnected, so is the router
+        for (Connection conn : conns) conn.disconnect();
+        assertTrue(set.hasConnections());
+        vconn.disconnect();
+        assertFalse(set.hasConnections());
+    }
+
+    @Test public void testBulkChanges () {
+        RSet<Integer> set = RSet.create(new HashSet<Integer>(Arrays.asList(1, 2, 3)));
+        Counter counter = new Counter();
+        set.connect(counter);
+        final List<String> changes = new ArrayList<String>();
+        set.connect(new RSet.Listener<Integer>() {
+            @Override public void onChanged (Set<Integer> added, Set<Integer> removed) {
+                changes.add(new TreeSet<Integer>(added) + " " + new TreeSet<Integer>(removed));
+            }
+        });
+
+        // replacing the contents delivers only the delta, in a single event
+        assertTrue(set.setAll(Arrays.asList(2, 3, 4, 5)));
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 3, 4, 5)), set);
+        assertFalse(set.setAll(new HashSet<Integer>(Arrays.asList(5, 4, 3, 2))));
+        // per-element listeners see each change
+        assertEquals(3, counter.notifies);
+
+        assertTrue(set.addAll(Arrays.asList(5, 6, 7)));
+        assertFalse(set.addAll(Arrays.asList(5, 6)));
+        assertTrue(set.removeAll(Arrays.asList(2, 9)));
+        assertTrue(set.retainAll(Arrays.asList(3, 4, 5)));
+        set.clear();
+        set.clear();
+        assertTrue(set.isEmpty());
+
+        assertEquals(Arrays.asList("[4, 5] [1]", "[6, 7] []", "[] [2]", "[] [6, 7]",
+                                   "[] [3, 4, 5]"), changes);
+        assertEquals(11, counter.notifies);
+    }
+
+    @Test public void testBulkHooks () {
+        final List<String> emitted = new ArrayList<String>();
+        RSet<Integer> set = new RSet<Integer>(new LinkedHashSet<Integer>(Arrays.asList(1, 2))) {
+            @Override protected void emitAdd (Integer elem) {
+                emitted.add("+" + elem);
+                super.emitAdd(elem);
+            }
+            @Override protected void emitRemove (Integer elem) {
+                emitted.add("-" + elem);
+                super.emitRemove(elem);
+            }
+        };
+        final List<String> changes = new ArrayList<String>();
+        set.connect(new RSet.Listener<Integer>() {
+            @Override public void onChanged (Set<Integer> added, Set<Integer> removed) {
+                changes.add(added + " " + removed);
+            }
+        });
+
+        // bulk changes pass each element through the hooks, yet are delivered as one event
+        set.addAll(Arrays.asList(5, 4, 3));
+        set.setAll(Arrays.asList(4, 6, 3));
+        set.clear();
+        assertEquals(Arrays.asList("+5", "+4", "+3", "-1", "-2", "-5", "+6", "-4", "-3", "-6"),
+                     emitted);
+        assertEquals(Arrays.asList("[5, 4, 3] []", "[6] [1, 2, 5]", "[] [4, 3, 6]"), changes);
+    }
+
+    @Test public void testBatch () {
+        RSet<Integer> set = RSet.create(new HashSet<Integer>(Arrays.asList(1, 2)));
+        Counter counter = new Counter();
+        set.connect(counter);
+        final List<String> changes = new ArrayList<String>();
+        set.connect(new RSet.Listener<Integer>() {
+            @Override public void onChanged (Set<Integer> added, Set<Integer> removed) {
+                changes.add(new TreeSet<Integer>(added) + " " + new TreeSet<Integer>(removed));
+            }
+        });
+
+        // changes are delivered once the outermost batch commits, less those that cancel out
+        set.startBatch();
+        try {
+            set.add(3);
+            set.remove(1);
+            set.startBatch();
+            set.addAll(Arrays.asList(4, 5));
+            set.commitBatch();
+            set.remove(4);
+            set.add(1);
+            set.remove(2);
+            assertTrue(changes.isEmpty());
+        } finally {
+            set.commitBatch();
+        }
+        assertEquals(Arrays.asList("[3, 5] [2]"), changes);
+        assertEquals(3, counter.notifies);
+
+        // an empty batch delivers nothing, and a commit without a batch fails
+        set.startBatch();
+        set.commitBatch();
+        assertEquals(1, changes.size());
+        try {
+            set.commitBatch();
+            fail();
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+    }
+
+    @Test public void testScheduler () {
+        ReactScheduler tick = new ReactScheduler();
+        RSet<Integer> set = RSet.create(new HashSet<Integer>(Arrays.asList(1, 2, 3)));
+        set.setScheduler(tick);
+        Counter counter = new Counter();
+        set.connect(counter);
+        final List<String> changes = new ArrayList<String>();
+        set.connect(new RSet.Listener<Integer>() {
+            @Override public void onChanged (Set<Integer> added, Set<Integer> removed) {
+                changes.add(added + " " + removed);
+            }
+        });
+
+        // additions and removals of the same element cancel out
+        set.add(4);
+        set.remove(1);
+        set.remove(4);
+        set.add(1);
+        tick.flush();
+        assertEquals(0, counter.notifies);
+
+        // a lone change is delivered as such, and several in a single event, in order
+        set.add(5);
+        tick.flush();
+        assertEquals(1, counter.notifies);
+        assertTrue(changes.isEmpty());
+        set.add(7);
+        set.add(6);
+        set.removeAll(Arrays.asList(2, 3));
+        assertEquals(1, counter.notifies);
+        tick.flush();
+        assertEquals(Arrays.asList("[7, 6] [2, 3]"), changes);
+        assertEquals(5, counter.notifies);
+    }
+
     @Test public void testSizeView () {
         RSet<String> set = RSet.create();
         set.add("one");
@@ -7,7 +7,19 @@ package react;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -77,6 +89,28 @@ public class SignalTest
         assertEquals(4, slot4.order);
     }
 
+    @Test public void testManySlots () {
+        final int count = 50000;
+        final List<Integer> order = new ArrayList<Integer>();
+        UnitSignal signal = new UnitSignal();
+        List<Connection> conns = new ArrayList<Connection>();
+        for (int ii = 0; ii < count; ii++) {
+            final int id = ii;
+            conns.add(signal.connect(new UnitSlot() {
+                public void onEmit () {
+                    order.add(id);
+                }
+            }));
+        }
+        signal.emit();
+        // slots of equal priority are notified in the order in which they were connected
+        assertEquals(count, order.size());
+        for (int ii = 0; ii < count; ii++) assertEquals(ii, order.get(ii).intValue());
+
+        for (Connection conn : conns) conn.disconnect();
+        assertFalse(signal.hasConnections());
+    }
+
     @Test public void testAddDuringDispatch () {
         final Signal<Integer> signal = Signal.create();
         final AccSlot<Integer> toAdd = new AccSlot<Integer>();
@@ -150,6 +184,189 @@ public class SignalTest
         assertEquals(Arrays.asList(5, 42), toRemove.events);
     }
 
+    @Test public void testConcurrentDispatch () throws InterruptedException {
+        final Signal<Integer> signal = Signal.create();
+        signal.setDispatchMode(Reactor.DispatchMode.CONCURRENT);
+        final AtomicInteger total = new AtomicInteger();
+        signal.connect(new Slot<Integer>() {
+            public void onEmit (Integer value) {
+                total.addAndGet(value);
+                // re-entrant emission does not fail in concurrent mode
+                if (value == 2) signal.emit(1);
+            }
+        });
+
+        final int threads = 4, emits = 10000;
+        List<Thread> emitters = new ArrayList<Thread>();
+        for (int tt = 0; tt < threads; tt++) {
+            emitters.add(new Thread() {
+                public void run () {
+                    Counter churn = new Counter();
+                    for (int ii = 0; ii < emits; ii++) {
+                        Connection conn = signal.connect(churn);
+                        signal.emit(ii % 2 + 1);
+                        conn.disconnect();
+                    }
+                }
+            });
+        }
+        for (Thread t : emitters) t.start();
+        for (Thread t : emitters) t.join();
+
+        // each pair of emits sends 1, then 2 which re-emits 1
+        assertEquals(threads * emits * 2, total.get());
+        assertEquals(1, signal._listeners.length);
+    }
+
+    @Test public void testConcurrentOnce () throws InterruptedException {
+        final Signal<Integer> signal = Signal.create();
+        signal.setDispatchMode(Reactor.DispatchMode.CONCURRENT);
+        final AtomicInteger notifies = new AtomicInteger();
+        final Slot<Integer> slot = new Slot<Integer>() {
+            public void onEmit (Integer value) {
+                notifies.incrementAndGet();
+            }
+        };
+        // before each round, a one-shot connection is made, which all threads then race to
+        // notify (and thus to disconnect)
+        final int threads = 4, rounds = 2000;
+        final CyclicBarrier barrier = new CyclicBarrier(threads, new Runnable() {
+            public void run () {
+                signal.connect(slot).once();
+            }
+        });
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> emitters = new ArrayList<Thread>();
+        for (int tt = 0; tt < threads; tt++) {
+            emitters.add(new Thread() {
+                public void run () {
+                    for (int ii = 0; ii < rounds; ii++) {
+                        try {
+                            barrier.await();
+                            signal.emit(ii);
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread t : emitters) t.start();
+        for (Thread t : emitters) t.join();
+
+        assertNull(failure.get());
+        assertTrue(notifies.get() >= rounds);
+        assertFalse(signal.hasConnections());
+    }
+
+    @Test public void testDisconnectAbsent () {
+        Signal<Integer> signal = Signal.create();
+        signal.connect(new Counter());
+        Cons<Slot<Integer>>[] lners = signal._listeners;
+        // disconnecting a slot that is not connected leaves the listener list as is
+        signal.disconnect(new Counter());
+        assertSame(lners, signal._listeners);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testSerialReentrantEmit () {
+        final Signal<Integer> signal = Signal.create();
+        signal.connect(new Slot<Integer>() {
+            public void onEmit (Integer value) {
+                if (value > 0) signal.emit(value-1);
+            }
+        });
+        signal.emit(1);
+    }
+
+    @Test public void testQueuedReentrantEmit () {
+        final Signal<Integer> signal = Signal.create();
+        signal.setDispatchMode(Reactor.DispatchMode.QUEUED);
+        final AccSlot<Integer> toAdd = new AccSlot<Integer>();
+        AccSlot<Integer> slot = new AccSlot<Integer>();
+        signal.connect(slot);
+        signal.connect(new Slot<Integer>() {
+            public void onEmit (Integer value) {
+                if (value == 1) {
+                    // queued emissions are dispatched in order once this one completes, and see
+                    // connections made during this one
+                    signal.emit(2);
+                    signal.emit(3);
+                    signal.connect(toAdd);
+                } else if (value == 2) {
+                    signal.emit(4);
+                }
+            }
+        });
+        signal.emit(1);
+        assertEquals(Arrays.asList(1, 2, 3, 4), slot.events);
+        assertEquals(Arrays.asList(2, 3, 4), toAdd.events);
+    }
+
+    @Test public void testQueuedConcurrentEmit () throws InterruptedException {
+        final Signal<Integer> signal = Signal.create();
+        signal.setDispatchMode(Reactor.DispatchMode.QUEUED);
+        final int[] total = new int[1];
+        signal.connect(new Slot<Integer>() {
+            public void onEmit (Integer value) {
+                total[0] += value; // queued mode never dispatches on two threads at once
+            }
+        });
+
+        final int threads = 4, emits = 10000;
+        List<Thread> emitters = new ArrayList<Thread>();
+        for (int tt = 0; tt < threads; tt++) {
+            emitters.add(new Thread() {
+                public void run () {
+                    for (int ii = 0; ii < emits; ii++) signal.emit(1);
+                }
+            });
+        }
+        for (Thread t : emitters) t.start();
+        for (Thread t : emitters) t.join();
+        assertEquals(threads * emits, total[0]);
+    }
+
+    @Test public void testBulkChangesDuringDispatch () {
+        final UnitSignal signal = new UnitSignal();
+        final int count = 20000;
+        final Counter once = new Counter(), added = new Counter(), moved = new Counter();
+        for (int ii = 0; ii < count; ii++) signal.connect(once).once();
+        final Connection mconn = signal.connect(moved);
+        final List<Integer> order = new ArrayList<Integer>();
+        signal.connect(new UnitSlot() {
+            public void onEmit () {
+                // changes made during dispatch are applied in the order they were requested
+                signal.connect(added).disconnect();
+                signal.connect(added);
+                mconn.atPriority(-1);
+                signal.connect(new UnitSlot() {
+                    public void onEmit () {
+                        order.add(1);
+                    }
+                });
+                signal.connect(new UnitSlot() {
+                    public void onEmit () {
+                        order.add(0);
+                    }
+                }).atPriority(-2);
+            }
+        }).once();
+
+        signal.emit();
+        assertEquals(count, once.notifies);
+        assertEquals(0, added.notifies);
+        assertEquals(1, moved.notifies);
+        assertEquals(4, signal._listeners.length);
+
+        signal.emit();
+        assertEquals(count, once.notifies);
+        assertEquals(1, added.notifies);
+        assertEquals(2, moved.notifies);
+        assertEquals(Arrays.asList(0, 1), order);
+        assertSame(moved, signal._listeners[1].listener());
+    }
+
     @Test public void testUnitSlot () {
         Signal<Integer> signal = Signal.create();
         final boolean[] fired = new boolean[] { false };
@@ -189,6 +406,253 @@ public class SignalTest
         signal.emit();
     }
 
+    @Test public void testFailurePolicies () {
+        UnitSignal signal = new UnitSignal();
+        Counter before = new Counter(), after = new Counter(), once = new Counter();
+        signal.connect(before).atPriority(-1);
+        signal.connect(new UnitSlot() {
+            public void onEmit () {
+                throw new IllegalArgumentException("Bang!");
+            }
+        });
+        signal.connect(once).once().atPriority(1);
+        signal.connect(after).atPriority(2);
+
+        // fail-fast throws immediately, skipping later slots
+        signal.setFailurePolicy(Reactor.FailurePolicy.FAIL_FAST);
+        try {
+            signal.emit();
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+        assertEquals(1, before.notifies);
+        assertEquals(0, after.notifies);
+
+        // report passes failures to the handler and notifies every slot
+        final List<Throwable> reported = new ArrayList<Throwable>();
+        signal.setFailurePolicy(Reactor.FailurePolicy.report(new Slot<Throwable>() {
+            public void onEmit (Throwable cause) {
+                reported.add(cause);
+            }
+        }));
+        signal.emit();
+        assertEquals(1, reported.size());
+        assertEquals(2, before.notifies);
+        assertEquals(1, once.notifies);
+        assertEquals(1, after.notifies);
+
+        // counting counts and drops failures; the one-shot slot is gone
+        Reactor.FailurePolicy.Counting counting = Reactor.FailurePolicy.counting();
+        signal.setFailurePolicy(counting);
+        signal.emit();
+        signal.emit();
+        assertEquals(2, counting.count());
+        assertEquals(4, before.notifies);
+        assertEquals(1, once.notifies);
+        assertEquals(3, after.notifies);
+    }
+
+    @Test public void testIntSignal () {
+        IntSignal signal = new IntSignal();
+        final int[] prim = new int[2];
+        signal.connect(new IntSlot() {
+            public void onEmit (int event) {
+                prim[0] += event;
+                prim[1]++;
+            }
+        });
+        final List<Integer> boxed = new ArrayList<Integer>();
+        signal.connect(new Slot<Integer>() {
+            public void onEmit (Integer event) {
+                boxed.add(event);
+            }
+        });
+        signal.emit(1000);
+        signal.emit(-3);
+        assertEquals(997, prim[0]);
+        assertEquals(2, prim[1]);
+        assertEquals(Arrays.asList(1000, -3), boxed);
+    }
+
+    @Test public void testPrimitiveMapFilter () {
+        IntSignal signal = new IntSignal();
+        AbstractIntSignal evens = signal.filterInt(new AbstractIntSignal.Filter() {
+            public boolean apply (int value) {
+                return value % 2 == 0;
+            }
+        }).mapInt(new AbstractIntSignal.Transform() {
+            public int apply (int value) {
+                return value / 2;
+            }
+        });
+        final List<Integer> halves = new ArrayList<Integer>();
+        Connection conn = evens.connect(new IntSlot() {
+            public void onEmit (int event) {
+                halves.add(event);
+            }
+        });
+        assertTrue(signal.hasConnections());
+        for (int ii = 0; ii < 6; ii++) signal.emit(ii);
+        assertEquals(Arrays.asList(0, 1, 2), halves);
+        conn.disconnect();
+        assertFalse(signal.hasConnections());
+
+        // bridge from a boxed signal, unboxing once at the boundary
+        Signal<Double> boxed = Signal.create();
+        final double[] sum = new double[1];
+        conn = DoubleSignal.unbox(boxed).connect(new DoubleSlot() {
+            public void onEmit (double event) {
+                sum[0] += event;
+            }
+        });
+        boxed.emit(1.5);
+        boxed.emit(2.25);
+        assertEquals(3.75, sum[0], 0);
+        conn.disconnect();
+        assertFalse(boxed.hasConnections());
+    }
+
+    @Test public void testAsyncDelivery () {
+        ManualExecutor exec = new ManualExecutor();
+        Signal<Integer> signal = Signal.create();
+        AccSlot<Integer> sync = new AccSlot<Integer>(), async = new AccSlot<Integer>();
+        signal.connect(sync);
+        // holding the connection weakly does nothing, lest its slot be collected
+        AsyncConnection conn = Async.connect(signal, exec, 8, async).holdWeakly();
+        signal.emit(1);
+        signal.emit(2);
+        signal.emit(3);
+        // emitting queues events and schedules a single delivery task
+        assertEquals(Arrays.asList(1, 2, 3), sync.events);
+        assertTrue(async.events.isEmpty());
+        assertEquals(3, conn.queueDepth());
+        assertEquals(1, exec.tasks.size());
+        exec.runAll();
+        assertEquals(Arrays.asList(1, 2, 3), async.events);
+        assertEquals(0, conn.queueDepth());
+
+        // failures are handled per the signal's failure policy, and delivery continues
+        Reactor.FailurePolicy.Counting failures = Reactor.FailurePolicy.counting();
+        signal.setFailurePolicy(failures);
+        Async.connect(signal, exec, 8, new Slot<Integer>() {
+            public void onEmit (Integer event) {
+                throw new RuntimeException("Bang!");
+            }
+        });
+        signal.emit(4);
+        signal.emit(5);
+        exec.runAll();
+        assertEquals(2, failures.count());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), async.events);
+
+        // disconnecting discards undelivered events
+        signal.emit(6);
+        conn.disconnect();
+        exec.runAll();
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), async.events);
+
+        // value listeners receive the old value as well
+        Value<String> value = Value.create("a");
+        final List<String> changes = new ArrayList<String>();
+        Async.connect(value, exec, 8, new Value.Listener<String>() {
+            public void onChange (String nvalue, String ovalue) {
+                changes.add(ovalue + nvalue);
+            }
+        });
+        value.update("b");
+        value.update("c");
+        exec.runAll();
+        assertEquals(Arrays.asList("ab", "bc"), changes);
+    }
+
+    @Test public void testAsyncBlocking () throws InterruptedException {
+        final Signal<Integer> signal = Signal.create();
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> events = Collections.synchronizedList(new ArrayList<Integer>());
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            AsyncConnection conn = Async.connect(signal, exec, 1, new Slot<Integer>() {
+                public void onEmit (Integer event) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ie) {
+                        throw new RuntimeException(ie);
+                    }
+                    events.add(event);
+                }
+            });
+            // the first event is taken by the (stalled) slot, the second fills the queue, and the
+            // emitter then blocks on the third until the slot catches up
+            Thread emitter = new Thread() {
+                public void run () {
+                    for (int ii = 1; ii <= 3; ii++) signal.emit(ii);
+                }
+            };
+            emitter.start();
+            for (int ii = 0; ii < 500 && emitter.getState() != Thread.State.WAITING; ii++) {
+                Thread.sleep(10);
+            }
+            assertEquals(Thread.State.WAITING, emitter.getState());
+            assertEquals(1, conn.queueDepth());
+
+            release.countDown();
+            emitter.join();
+            for (int ii = 0; ii < 500 && events.size() < 3; ii++) Thread.sleep(10);
+            assertEquals(Arrays.asList(1, 2, 3), events);
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    @Test public void testAsyncBackpressure () {
+        Signal<Integer> signal = Signal.create();
+        ManualExecutor exec = new ManualExecutor();
+        AccSlot<Integer> newest = new AccSlot<Integer>();
+        AccSlot<Integer> oldest = new AccSlot<Integer>();
+        AccSlot<Integer> latest = new AccSlot<Integer>();
+        AsyncConnection dropNewest = Async.connect(
+            signal, exec, 2, AsyncConnection.Backpressure.DROP_NEWEST, newest);
+        AsyncConnection dropOldest = Async.connect(
+            signal, exec, 2, AsyncConnection.Backpressure.DROP_OLDEST, oldest);
+        AsyncConnection keepLatest = Async.connect(
+            signal, exec, 2, AsyncConnection.Backpressure.KEEP_LATEST, latest);
+        for (int ii = 1; ii <= 5; ii++) signal.emit(ii);
+        assertEquals(2, dropNewest.queueDepth());
+        assertEquals(2, keepLatest.queueDepth());
+        exec.runAll();
+
+        assertEquals(Arrays.asList(1, 2), newest.events);
+        assertEquals(3, dropNewest.dropped());
+        assertEquals(Arrays.asList(4, 5), oldest.events);
+        assertEquals(3, dropOldest.dropped());
+        assertEquals(Arrays.asList(1, 5), latest.events);
+        assertEquals(0, keepLatest.dropped());
+        assertEquals(3, keepLatest.conflated());
+
+        // once drained, events are queued normally again
+        signal.emit(6);
+        exec.runAll();
+        assertEquals(Arrays.asList(1, 2, 6), newest.events);
+        assertEquals(3, dropNewest.dropped());
+
+        // conflated value changes span from the first old value to the latest value
+        Value<String> value = Value.create("a");
+        final List<String> changes = new ArrayList<String>();
+        AsyncConnection conn = Async.connect(
+            value, exec, 1, AsyncConnection.Backpressure.KEEP_LATEST, new Value.Listener<String>() {
+            public void onChange (String nvalue, String ovalue) {
+                changes.add(ovalue + nvalue);
+            }
+        });
+        value.update("b");
+        value.update("c");
+        value.update("d");
+        exec.runAll();
+        assertEquals(Arrays.asList("ad"), changes);
+        assertEquals(2, conn.conflated());
+    }
+
     @Test public void testMappedSignal () {
         Signal<Integer> signal = Signal.create();
         SignalView<String> mapped = signal.map(Functions.TO_STRING);
@@ -208,6 +672,176 @@ public class SignalTest
         assertFalse(signal.hasConnections());
     }
 
+    @Test public void testOperators () {
+        Signal<Integer> signal = Signal.create();
+        AbstractSignal<Integer> doubled = signal.map(new Function<Integer,Integer>() {
+            public Integer apply (Integer value) {
+                return value * 2;
+            }
+        });
+        AbstractSignal<Integer> big = doubled.filter(Functions.greaterThan(4));
+        AccSlot<String> strs = new AccSlot<String>();
+        Connection conn = big.map(Functions.TO_STRING).connect(strs);
+
+        // the chain is fused: only its last signal connects (directly to the source)
+        assertTrue(signal.hasConnections());
+        assertFalse(doubled.hasConnections());
+        assertFalse(big.hasConnections());
+        for (int ii = 1; ii <= 4; ii++) signal.emit(ii);
+        assertEquals(Arrays.asList("6", "8"), strs.events);
+        conn.disconnect();
+        assertFalse(signal.hasConnections());
+
+        AccSlot<String> odds = new AccSlot<String>();
+        signal.collect(new Function<Integer,String>() {
+            public String apply (Integer value) {
+                return (value % 2 == 1) ? ("odd" + value) : null;
+            }
+        }).connect(odds);
+        AccSlot<Integer> distinct = new AccSlot<Integer>();
+        signal.distinctUntilChanged().connect(distinct);
+        Function2<Integer,Integer,Integer> sum = new Function2<Integer,Integer,Integer>() {
+            public Integer apply (Integer acc, Integer value) {
+                return acc + value;
+            }
+        };
+        AccSlot<Integer> sums = new AccSlot<Integer>();
+        signal.scan(0, sum).connect(sums);
+        ValueView<Integer> total = signal.fold(100, sum);
+        total.connect(new Counter());
+        AccSlot<List<Integer>> pairs = new AccSlot<List<Integer>>();
+        signal.buffer(2).connect(pairs);
+
+        for (int value : new int[] { 1, 1, 2, 3, 3 }) signal.emit(value);
+        assertEquals(Arrays.asList("odd1", "odd1", "odd3", "odd3"), odds.events);
+        assertEquals(Arrays.asList(1, 2, 3), distinct.events);
+        assertEquals(Arrays.asList(1, 2, 4, 7, 10), sums.events);
+        assertEquals(110, total.get().intValue());
+        assertEquals(Arrays.asList(Arrays.asList(1, 1), Arrays.asList(2, 3)), pairs.events);
+    }
+
+    @Test public void testStatefulOperatorsShared () {
+        Signal<Integer> signal = Signal.create();
+        AbstractSignal<Integer> sums = signal.scan(0, new Function2<Integer,Integer,Integer>() {
+            public Integer apply (Integer acc, Integer value) {
+                return acc + value;
+            }
+        });
+        AccSlot<String> strs = new AccSlot<String>();
+        AccSlot<Integer> evens = new AccSlot<Integer>();
+        Connection c1 = sums.map(Functions.TO_STRING).connect(strs);
+        signal.emit(1);
+        signal.emit(2);
+        Connection c2 = sums.filter(new Function<Integer,Boolean>() {
+            public Boolean apply (Integer value) {
+                return value % 2 == 0;
+            }
+        }).connect(evens);
+        signal.emit(3);
+        signal.emit(4);
+
+        // both chains read the one accumulation, which a late chain joins midway
+        assertEquals(Arrays.asList("1", "3", "6", "10"), strs.events);
+        assertEquals(Arrays.asList(6, 10), evens.events);
+        assertTrue(sums.hasConnections());
+        c1.disconnect();
+        c2.disconnect();
+        assertFalse(signal.hasConnections());
+    }
+
+    @Test public void testTimedOperators () {
+        ManualClock clock = new ManualClock();
+        Signal<String> signal = Signal.create();
+        AccSlot<String> debounced = new AccSlot<String>();
+        Connection dconn = signal.debounce(100, clock).connect(debounced);
+        AccSlot<String> throttled = new AccSlot<String>();
+        signal.throttle(100, clock).connect(throttled);
+        AccSlot<String> sampled = new AccSlot<String>();
+        signal.sample(100, clock).connect(sampled);
+        AccSlot<List<String>> buffered = new AccSlot<List<String>>();
+        signal.buffer(100, clock).connect(buffered);
+
+        // a burst of events, 40ms apart, then a pause
+        for (String event : new String[] { "a", "b", "c", "d" }) {
+            signal.emit(event);
+            clock.advance(40);
+        }
+        clock.advance(200);
+        assertEquals(Arrays.asList("d"), debounced.events);
+        assertEquals(Arrays.asList("a", "d"), throttled.events);
+        assertEquals(Arrays.asList("c", "d"), sampled.events);
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c"), Arrays.asList("d")),
+                     buffered.events);
+
+        // pending events are discarded on disconnect
+        signal.emit("e");
+        dconn.disconnect();
+        clock.advance(200);
+        assertEquals(Arrays.asList("d"), debounced.events);
+        assertEquals(Arrays.asList("c", "d", "e"), sampled.events);
+    }
+
+    @Test public void testAsyncClock () throws InterruptedException {
+        // the timer waits, but the actions are handed back to our "frame loop" to emit events
+        final BlockingQueue<Runnable> frame = new LinkedBlockingQueue<Runnable>();
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Clock clock = Async.clock(timer, new Executor() {
+                public void execute (Runnable action) {
+                    frame.add(action);
+                }
+            });
+            Signal<String> signal = Signal.create();
+            AccSlot<String> debounced = new AccSlot<String>();
+            signal.debounce(10, clock).connect(debounced);
+            signal.emit("a");
+            Runnable action = frame.poll(5, TimeUnit.SECONDS);
+            assertNotNull(action);
+            assertTrue(debounced.events.isEmpty());
+            action.run();
+            assertEquals(Arrays.asList("a"), debounced.events);
+        } finally {
+            timer.shutdown();
+        }
+    }
+
+    protected static class ManualClock implements Clock {
+        public long now () {
+            return _now;
+        }
+        public void schedule (long delay, Runnable action) {
+            _actions.add(new Object[] { _now + delay, action });
+        }
+        /** Advances the time by {@code millis}, running the actions that come due, in order. */
+        public void advance (long millis) {
+            long until = _now + millis;
+            while (true) {
+                Object[] next = null;
+                for (Object[] action : _actions) {
+                    long when = (Long)action[0];
+                    if (when <= until && (next == null || when < (Long)next[0])) next = action;
+                }
+                if (next == null) break;
+                _actions.remove(next);
+                _now = (Long)next[0];
+                ((Runnable)next[1]).run();
+            }
+            _now = until;
+        }
+        protected long _now;
+        protected List<Object[]> _actions = new ArrayList<Object[]>();
+    }
+
+    protected static class ManualExecutor implements Executor {
+        public List<Runnable> tasks = new ArrayList<Runnable>();
+        public void execute (Runnable task) {
+            tasks.add(task);
+        }
+        public void runAll () {
+            while (!tasks.isEmpty()) tasks.remove(0).run();
+        }
+    }
+
     protected static class AccSlot<T> extends Slot<T> {
         public List<T> events = new ArrayList<T>();
         public void onEmit (T event) {
@@ -7,6 +7,9 @@ package react;
 
 import org.junit.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
@@ -74,6 +77,47 @@ public class ValueTest
         assertFalse(value.hasConnections());
     }
 
+    @Test public void testMemoMappedValue () {
+        final int[] applies = new int[1];
+        Function<Integer,Integer> tens = new Function<Integer,Integer>() {
+            public Integer apply (Integer value) {
+                applies[0]++;
+                return value / 10;
+            }
+        };
+        Value<Integer> value = Value.create(42);
+        AbstractValue<Integer> mapped = value.mapMemo(tens);
+        ValueView<String> chained = mapped.mapMemo(Functions.TO_STRING);
+        assertEquals("4", chained.get());
+        assertEquals(1, applies[0]);
+
+        SignalTest.Counter counter = new SignalTest.Counter();
+        Connection c1 = chained.connect(counter);
+        applies[0] = 0;
+
+        // the function is applied once per change, and reads use the cached value
+        value.update(45);
+        assertEquals(1, applies[0]);
+        assertEquals(4, mapped.get().intValue());
+        assertEquals(1, applies[0]);
+        // the mapped value did not change, so the chain is not notified
+        assertEquals(0, counter.notifies);
+
+        Connection c2 = chained.connect(SignalTest.require("1"));
+        value.update(15);
+        assertEquals(1, counter.notifies);
+        assertEquals("1", chained.get());
+        value.updateForce(15);
+        assertEquals(1, counter.notifies);
+
+        // disconnect from the mapped value and ensure that it disconnects in turn
+        c1.disconnect();
+        c2.disconnect();
+        assertFalse(value.hasConnections());
+        value.update(99);
+        assertEquals("9", chained.get());
+    }
+
     @Test public void testConnectNotify () {
         Value<Integer> value = Value.create(42);
         final boolean[] fired = new boolean[] { false };
@@ -146,6 +190,156 @@ public class ValueTest
         assertEquals(1, fired[0]);
     }
 
+    @Test public void testIntValue () {
+        IntValue value = new IntValue(42);
+        final int[] fired = new int[2];
+        value.connect(new IntValue.Listener() {
+            public void onChange (int nvalue, int ovalue) {
+                assertEquals(42, ovalue);
+                assertEquals(15, nvalue);
+                fired[0]++;
+            }
+        });
+        value.connect(new Value.Listener<Integer>() {
+            public void onChange (Integer nvalue, Integer ovalue) {
+                assertEquals(42, ovalue.intValue());
+                assertEquals(15, nvalue.intValue());
+                fired[1]++;
+            }
+        });
+        assertEquals(42, value.update(15));
+        assertEquals(15, value.getInt());
+        assertEquals(15, value.get().intValue());
+        // equal values are not dispatched, whether boxed or not
+        value.update(15);
+        value.update(Integer.valueOf(15));
+        assertEquals(1, fired[0]);
+        assertEquals(1, fired[1]);
+    }
+
+    @Test public void testBoxedHooks () {
+        final List<Integer> emitted = new ArrayList<Integer>();
+        IntValue value = new IntValue(1) {
+            @Override protected void emitChange (Integer value, Integer ovalue) {
+                emitted.add(value);
+                super.emitChange(value, ovalue);
+            }
+        };
+        final int[] fired = new int[1];
+        value.connect(new IntValue.Listener() {
+            public void onChange (int nvalue, int ovalue) {
+                fired[0] = nvalue;
+            }
+        });
+        // boxed updates go through the boxed hooks, and still reach unboxed listeners
+        value.update(Integer.valueOf(2));
+        assertEquals(Arrays.asList(2), emitted);
+        assertEquals(2, fired[0]);
+        // unboxed updates bypass them
+        value.update(3);
+        assertEquals(Arrays.asList(2), emitted);
+        assertEquals(3, fired[0]);
+        // but the increment helpers go through them
+        assertEquals(5, value.increment(2));
+        assertEquals(4, value.decrementClamp(3, 4));
+        assertEquals(Arrays.asList(2, 5, 4), emitted);
+        assertEquals(4, fired[0]);
+    }
+
+    @Test public void testPrimitiveValues () {
+        LongValue lvalue = new LongValue(Long.MAX_VALUE);
+        final long[] lfired = new long[1];
+        lvalue.connect(new LongValue.Listener() {
+            public void onChange (long nvalue, long ovalue) {
+                lfired[0] = ovalue;
+            }
+        });
+        lvalue.increment(-1);
+        assertEquals(Long.MAX_VALUE, lfired[0]);
+        assertEquals(Long.MAX_VALUE-1, lvalue.getLong());
+
+        DoubleValue dvalue = new DoubleValue(Double.NaN);
+        final double[] dfired = new double[2];
+        dvalue.connect(new DoubleValue.Listener() {
+            public void onChange (double nvalue, double ovalue) {
+                dfired[0] = nvalue;
+                dfired[1]++;
+            }
+        });
+        dvalue.update(Double.NaN); // NaN equals NaN, per Double.equals
+        assertEquals(0, dfired[1], 0);
+        dvalue.update(-0.5);
+        assertEquals(-0.5, dfired[0], 0);
+        assertEquals(1, dfired[1], 0);
+
+        BooleanValue bvalue = new BooleanValue(false);
+        final boolean[] bfired = new boolean[2];
+        bvalue.connectNotify(new BooleanValue.Listener() {
+            public void onChange (boolean nvalue, boolean ovalue) {
+                bfired[0] = nvalue;
+                bfired[1] = ovalue;
+            }
+        });
+        assertFalse(bfired[0]);
+        assertTrue(bvalue.toggle());
+        assertTrue(bfired[0]);
+        assertFalse(bfired[1]);
+    }
+
+    @Test public void testScheduler () {
+        ReactScheduler frame = new ReactScheduler();
+        final List<String> changes = new ArrayList<String>();
+        final Value<String> a = Value.create("a");
+        IntValue b = new IntValue(1);
+        a.setScheduler(frame);
+        b.setScheduler(frame);
+        a.connect(new Value.Listener<String>() {
+            public void onChange (String nvalue, String ovalue) {
+                changes.add(ovalue + nvalue);
+            }
+        });
+        b.connect(new IntValue.Listener() {
+            public void onChange (int nvalue, int ovalue) {
+                changes.add(ovalue + "" + nvalue);
+            }
+        });
+
+        // changes are deferred to the flush, and conflated, in the order first changed
+        b.update(2);
+        a.update("b");
+        a.update("c");
+        b.update(3);
+        assertTrue(changes.isEmpty());
+        assertTrue(frame.hasPending());
+        frame.flush();
+        assertEquals(Arrays.asList("13", "ac"), changes);
+        assertFalse(frame.hasPending());
+
+        // a value changed back to what its listeners last observed is not notified
+        a.update("d");
+        a.update("c");
+        frame.flush();
+        assertEquals(2, changes.size());
+
+        // changes made while flushing are deferred to the next flush
+        a.connect(new Value.Listener<String>() {
+            public void onChange (String nvalue, String ovalue) {
+                if (nvalue.equals("e")) a.update("f");
+            }
+        });
+        changes.clear();
+        a.update("e");
+        frame.flush();
+        assertEquals(Arrays.asList("ce"), changes);
+        frame.flush();
+        assertEquals(Arrays.asList("ce", "ef"), changes);
+
+        // without a scheduler, changes are notified immediately
+        a.setScheduler(null);
+        a.update("g");
+        assertEquals(Arrays.asList("ce", "ef", "fg"), changes);
+    }
+
     @Test public void testWeakListener () {
         final Value<Integer> value = Value.create(42);
         final AtomicInteger fired = new AtomicInteger(0);
@@ -5,6 +5,10 @@
 
 package react;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -22,16 +26,16 @@ public class ValuesTest
         @SuppressWarnings("unchecked") // TODO: remove when we use JDK 1.7 @SafeVarargs
         ValueView<Boolean> anded = Values.and(a, b, c);
         assertFalse(anded.get());
-        anded.connect(new Value.Listener<Boolean>() {
+        // a change to an input that does not change the result is not emitted
+        Connection conn = anded.connect(new Value.Listener<Boolean>() {
             public void onChange (Boolean value, Boolean oldValue) {
-                assertFalse(value);
-                assertFalse(oldValue);
                 fired[0] = true;
             }
-        }).once();
+        });
         a.update(true);
-        assertTrue(fired[0]);
-        fired[0] = false;
+        assertFalse(anded.get());
+        assertFalse(fired[0]);
+        conn.disconnect();
 
         anded.connect(new Value.Listener<Boolean>() {
             public void onChange (Boolean value, Boolean oldValue) {
@@ -58,6 +62,112 @@ public class ValuesTest
         fired[0] = false;
     }
 
+    @Test public void testCounted () {
+        List<Value<Boolean>> inputs = new ArrayList<Value<Boolean>>();
+        for (int ii = 0; ii < 2000; ii++) inputs.add(Value.create(ii % 2 == 0));
+        ValueView<Integer> count = Values.count(inputs);
+        ValueView<Boolean> any = Values.any(inputs), all = Values.all(inputs);
+        ValueView<Boolean> none = Values.none(inputs);
+        // disconnected aggregates compute their result on demand
+        assertEquals(1000, count.get().intValue());
+        assertTrue(any.get());
+        assertFalse(all.get());
+        assertFalse(none.get());
+
+        final List<Object> changes = new ArrayList<Object>();
+        ValueView.Listener<Object> recorder = new ValueView.Listener<Object>() {
+            public void onChange (Object value, Object ovalue) {
+                changes.add(value);
+            }
+        };
+        count.connect(recorder);
+        any.connect(recorder);
+        all.connect(recorder);
+        none.connect(recorder);
+
+        // forced updates that leave an input unchanged do not affect the count
+        inputs.get(0).updateForce(true);
+        assertEquals(0, changes.size());
+
+        // clear all inputs; only the final change flips any and none
+        for (Value<Boolean> input : inputs) input.update(false);
+        assertEquals(1002, changes.size());
+        assertEquals(Arrays.<Object>asList(0, false, true), changes.subList(999, 1002));
+        assertEquals(0, count.get().intValue());
+        assertTrue(none.get());
+
+        // set all inputs; only the first change flips any and none, and the last flips all
+        changes.clear();
+        for (Value<Boolean> input : inputs) input.update(true);
+        assertEquals(2003, changes.size());
+        assertEquals(Arrays.<Object>asList(1, true, false), changes.subList(0, 3));
+        assertEquals(Arrays.<Object>asList(2000, true), changes.subList(2001, 2003));
+        assertEquals(2000, count.get().intValue());
+        assertTrue(all.get());
+
+        // a null input counts as false
+        changes.clear();
+        inputs.get(5).update(null);
+        assertEquals(Arrays.<Object>asList(1999, false), changes);
+        assertEquals(1999, count.get().intValue());
+    }
+
+    @Test public void testGlitchFree () {
+        final int[] applies = new int[1];
+        Value<Integer> a = Value.create(5);
+        // a diamond: b and c derive from a, d derives from both (and is always true)
+        ValueView<Boolean> b = a.map(new Function<Integer,Boolean>() {
+            public Boolean apply (Integer value) {
+                return value > 0;
+            }
+        });
+        ValueView<Boolean> c = a.map(new Function<Integer,Boolean>() {
+            public Boolean apply (Integer value) {
+                return value <= 0;
+            }
+        });
+        @SuppressWarnings("unchecked") // TODO: remove when we use JDK 1.7 @SafeVarargs
+        ValueView<Boolean> d = Values.or(b, c);
+        ValueView<String> e = d.map(new Function<Boolean,String>() {
+            public String apply (Boolean value) {
+                applies[0]++;
+                return String.valueOf(value);
+            }
+        });
+        SignalTest.Counter counter = new SignalTest.Counter();
+        d.connect(counter);
+        final List<String> es = new ArrayList<String>();
+        e.connect(new Value.Listener<String>() {
+            public void onChange (String value, String ovalue) {
+                es.add(value);
+            }
+        });
+        // b and c both change on each flip of a's sign, but d never observes them out of step
+        a.update(-5);
+        a.update(5);
+        a.update(6);
+        assertEquals(0, counter.notifies);
+        assertEquals(0, applies[0]);
+        assertTrue(es.isEmpty());
+
+        // changes propagate through a deeper graph in rank order, each value notified once
+        final List<String> order = new ArrayList<String>();
+        ValueView<Boolean> f = Values.and(d, b);
+        f.connect(new Value.Listener<Boolean>() {
+            public void onChange (Boolean value, Boolean ovalue) {
+                order.add("f" + value);
+            }
+        });
+        b.connect(new Value.Listener<Boolean>() {
+            public void onChange (Boolean value, Boolean ovalue) {
+                order.add("b" + value);
+            }
+        });
+        a.update(-1);
+        a.update(1);
+        assertEquals(Arrays.asList("bfalse", "ffalse", "btrue", "ftrue"), order);
+    }
+
     @Test public void testSignalAsValue () {
         Signal<Integer> intsig = Signal.create();
         ValueView<Integer> intval = Values.asValue(intsig, 15);